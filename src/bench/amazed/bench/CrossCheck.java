@@ -0,0 +1,544 @@
+package amazed.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import amazed.maze.Batch;
+import amazed.maze.Components;
+import amazed.maze.Graph;
+import amazed.maze.Maze;
+import amazed.maze.Path;
+import amazed.maze.StorageCheck;
+import amazed.solver.AStarSolver;
+import amazed.solver.BidirectionalSolver;
+import amazed.solver.ForkJoinSolver;
+import amazed.solver.JunctionSolver;
+import amazed.solver.ParallelAStarSolver;
+import amazed.solver.ParallelBfsSolver;
+import amazed.solver.PathQueries;
+import amazed.solver.SequentialSolver;
+import amazed.solver.ThreadSolver;
+
+/**
+ * <code>CrossCheck</code> checks the solvers, and the structures that
+ * they search, against a plain sequential breadth-first search.
+ * <p>
+ * The check runs on a few fixed maps that cover corner cases, such as
+ * a start node on a wall, a maze without goals, and a single cell, and
+ * on <code>GRIDS</code> random grids drawn from <code>SEED</code>: most
+ * of them small, with a walled start node half of the time, and every
+ * tenth one large enough to be split among several parallel tasks. On
+ * every map, every solver must find a valid path exactly if a goal is
+ * reachable, and shortest-path solvers a path of the length of the
+ * breadth-first search, both in the common pool and in a pool of four
+ * workers, so that tasks are stolen and handed over even on a machine
+ * with a single core. The components of every maze must be those
+ * of a breadth-first labelling, and tell whether a goal is reachable
+ * as the search does. Random point-to-point queries, with duplicate
+ * goals and goals on their start cell among them, must find paths of
+ * the breadth-first distance, one at a time and in parallel, twice in
+ * a row so that the second round reuses the scratch of the first.
+ * The graph of every map with its tiles off the heap, which is only
+ * built by default for boards too large to check, must have the same
+ * tiles, goals, neighbors and identifiers as with its tiles on the
+ * heap.
+ * Finally, binary maps whose goal list is out of order, has duplicates,
+ * or lists cells outside the map or without a heart must fail to load,
+ * and so must text and binary maps without cells. Large maps with
+ * rows that span lines, comments, unknown symbols and bad UTF-8 must
+ * parse to the same tiles, goals and reports in chunks, in a pool of
+ * four workers, as sequentially.
+ * <p>
+ * The check prints every failure with its map, and exits with status 1
+ * if there was any.
+ *
+ * usage: java amazed.bench.CrossCheck [SEED] [GRIDS]
+ */
+
+public class CrossCheck
+{
+    // corner cases, checked before the random grids
+    private static final String[] FIXTURES = {
+        "$ 1 , 1\n\n . \n",                                         // single cell, no goal
+        "$ 1 , 1\n\n v \n",                                         // single cell, start on the goal
+        "$ 3 , 4\n\n # . . . \n . # . . \n . . . v \n",              // walled start
+        "$ 2 , 3\n\n # # v \n # . . \n",                             // walled start, no neighbors
+        "$ 3 , 3\n\n . . . \n . # . \n . . . \n",                    // no goal
+        "$ 2 , 2\n\n # # \n # # \n",                                 // all walls
+        "$ 3 , 5\n\n . . # . v \n . . # . . \n v . # . . \n",        // goal on both sides of a wall
+    };
+
+    // maps parsed both sequentially and in chunks
+    private static final int LARGE_MAPS = 4;
+    // unknown symbols of the large maps: ASCII, valid UTF-8, and
+    // invalid UTF-8 (a truncated sequence and a byte that never occurs)
+    private static final byte[][] LARGE_SYMBOLS = {
+        { 'x' }, { (byte) 0xc3, (byte) 0xa9 }, { (byte) 0xe2, (byte) 0x82 }, { (byte) 0xff }, { (byte) 0xc3 }
+    };
+    private static final byte[][] LARGE_SPACES = { { ' ' }, { '\t' }, { ' ', ' ' } };
+    private static final byte[][] LARGE_LINE_ENDS = { { '\n' }, { '\n' }, { '\r', '\n' }, { '\r' }, { '\n', '\n' } };
+
+    private static int checks = 0;
+    private static int failures = 0;
+
+    // workers for the solvers besides the common pool, which may have a
+    // single one: hand-offs between workers only happen with several
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    private static Map<String, Function<Maze, RecursiveTask<Path>>> solvers()
+    {
+        Map<String, Function<Maze, RecursiveTask<Path>>> solvers = new LinkedHashMap<>();
+        solvers.put("sequential", maze -> new SequentialSolver(maze));
+        solvers.put("parallel-0", maze -> new ForkJoinSolver(maze, 0));
+        solvers.put("parallel-3", maze -> new ForkJoinSolver(maze, 3));
+        solvers.put("parallel-auto", maze -> new ForkJoinSolver(maze, true));
+        solvers.put("bfs-parallel", maze -> new ParallelBfsSolver(maze));
+        solvers.put("bidirectional", maze -> new BidirectionalSolver(maze));
+        solvers.put("astar", maze -> new AStarSolver(maze));
+        solvers.put("astar-parallel", maze -> new ParallelAStarSolver(maze));
+        solvers.put("junction", maze -> new JunctionSolver(maze));
+        solvers.put("threads", maze -> new ThreadSolver(maze, 2));
+        return solvers;
+    }
+
+    // solvers that find shortest paths
+    private static final List<String> SHORTEST = Arrays.asList("bfs-parallel", "astar", "astar-parallel", "junction");
+
+    public static void main(String[] args)
+    throws IOException
+    {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        int nGrids = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        List<String> maps = new ArrayList<>(Arrays.asList(FIXTURES));
+        Random random = new Random(seed);
+        for (int i = 0; i < nGrids; i++)
+            maps.add(randomGrid(random, i % 10 == 9));
+        java.nio.file.Path directory = Files.createTempDirectory("amazed-check");
+        try {
+            for (int i = 0; i < maps.size(); i++) {
+                java.nio.file.Path file = directory.resolve("map" + i + ".map");
+                Files.writeString(file, maps.get(i));
+                Maze maze = new Maze(file.toString());
+                maze.setDelay(-1);
+                check(maps.get(i), maze, random);
+                checkOffHeap(maps.get(i), file);
+            }
+            checkBinaryGoals(directory);
+            checkEmptyMaps(directory);
+            checkChunkedParse(directory, random);
+        } finally {
+            POOL.shutdown();
+            try (Stream<java.nio.file.Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+        System.out.println(maps.size() + " maps, " + checks + " checks, " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    // a random grid, large if `large', in map file format
+    private static String randomGrid(Random random, boolean large)
+    {
+        int nRows = large ? 100 + random.nextInt(60) : 1 + random.nextInt(14);
+        int nCols = large ? 100 + random.nextInt(60) : 1 + random.nextInt(14);
+        double walls = random.nextDouble() * 0.5;
+        double goals = random.nextInt(4) == 0 ? 0 : random.nextDouble() * (large ? 0.002 : 0.06);
+        boolean walledStart = random.nextBoolean();
+        StringBuilder map = new StringBuilder("$ " + nRows + " , " + nCols + "\n\n");
+        for (int row = 0; row < nRows; row++) {
+            for (int col = 0; col < nCols; col++) {
+                double x = random.nextDouble();
+                char tile = x < walls ? '#' : x < walls + goals ? 'v' : '.';
+                if (row == 0 && col == 0)
+                    tile = walledStart ? '#' : tile;
+                map.append(' ').append(tile);
+            }
+            map.append('\n');
+        }
+        return map.toString();
+    }
+
+    private static void check(String map, Maze maze, Random random)
+    {
+        Graph graph = maze.graph();
+        int[] distance = distances(graph, graph.indexOf(maze.start()));
+        int nearest = -1;
+        for (int goal: graph.goals()) {
+            if (distance[goal] != -1 && (nearest == -1 || distance[goal] < nearest))
+                nearest = distance[goal];
+        }
+        for (ForkJoinPool pool: Arrays.asList(ForkJoinPool.commonPool(), POOL))
+            checkSolvers(map, maze, pool, nearest);
+        checkComponents(map, maze, nearest != -1);
+        checkQueries(map, maze, random);
+    }
+
+    // every solver run in `pool' on `maze', where the nearest goal is at
+    // distance `nearest', or -1 if none is reachable
+    private static void checkSolvers(String map, Maze maze, ForkJoinPool pool, int nearest)
+    {
+        for (Map.Entry<String, Function<Maze, RecursiveTask<Path>>> entry: solvers().entrySet()) {
+            String solver = entry.getKey() + " (" + pool.getParallelism() + " workers)";
+            Path path;
+            try {
+                path = pool.invoke(entry.getValue().apply(maze));
+            } catch (RuntimeException | StackOverflowError e) {
+                expect(false, map, solver + " threw " + e);
+                continue;
+            }
+            if (nearest == -1)
+                expect(path == null, map, solver + " found a path, but no goal is reachable");
+            else if (path == null)
+                expect(false, map, solver + " found no path, but a goal is at distance " + nearest);
+            else if (!maze.isValidPath(path))
+                expect(false, map, solver + " found an invalid path " + path);
+            else if (SHORTEST.contains(entry.getKey()))
+                expect(path.length() == nearest + 1, map,
+                       solver + " found a path of " + path.length() + " nodes instead of " + (nearest + 1));
+            else
+                expect(true, map, solver);
+        }
+    }
+
+    // the graph of map file `file', with tiles off the heap, against
+    // the graph with tiles on the heap, with random and dense ids
+    private static void checkOffHeap(String map, java.nio.file.Path file)
+    throws IOException
+    {
+        for (boolean denseIds: new boolean[] { false, true }) {
+            String difference = StorageCheck.compareOffHeap(file.toString(), denseIds);
+            expect(difference == null, map,
+                   "off-heap graph with " + (denseIds ? "dense" : "random") + " ids differs: " + difference);
+        }
+    }
+
+    // the components of `maze' against a breadth-first labelling
+    private static void checkComponents(String map, Maze maze, boolean reachable)
+    {
+        Graph graph = maze.graph();
+        Components components = maze.components();
+        int[] reference = labels(graph);
+        int count = 0;
+        for (int label: reference)
+            count = Math.max(count, label + 1);
+        // reference component --> component, -1 if not seen yet
+        int[] mapped = new int[count];
+        Arrays.fill(mapped, -1);
+        boolean[] used = new boolean[components.count()];
+        boolean same = components.count() == count;
+        for (int index = 0; index < graph.size() && same; index++) {
+            int r = reference[index], c = components.component(index);
+            if (r == -1 || c == -1)
+                same = r == c;
+            else if (mapped[r] == -1) {
+                same = !used[c];
+                mapped[r] = c;
+                used[c] = true;
+            } else
+                same = mapped[r] == c;
+        }
+        expect(same, map, "components differ from a breadth-first labelling");
+        expect(maze.isGoalReachable() == reachable, map, "isGoalReachable() is " + !reachable);
+    }
+
+    // random point-to-point queries on `maze' against breadth-first distances
+    private static void checkQueries(String map, Maze maze, Random random)
+    {
+        Graph graph = maze.graph();
+        PathQueries queries = new PathQueries(maze);
+        int nQueries = 20;
+        PathQueries.Query[] batch = new PathQueries.Query[nQueries];
+        int[] starts = new int[nQueries];
+        int[][] goals = new int[nQueries][];
+        // query --> length of a shortest path, -1 if none
+        int[] expected = new int[nQueries];
+        for (int q = 0; q < nQueries; q++) {
+            int start = random.nextInt(graph.size());
+            int[] targets = new int[1 + random.nextInt(q % 4 == 0 ? 12 : 2)];
+            for (int i = 0; i < targets.length; i++)
+                targets[i] = random.nextInt(graph.size());
+            if (q % 5 == 0)
+                targets[0] = start;
+            if (targets.length > 1 && q % 3 == 0)
+                targets[1] = targets[0];
+            int[] rows = new int[targets.length], cols = new int[targets.length];
+            for (int i = 0; i < targets.length; i++) {
+                rows[i] = graph.row(targets[i]);
+                cols[i] = graph.col(targets[i]);
+            }
+            batch[q] = new PathQueries.Query(graph.row(start), graph.col(start), rows, cols);
+            starts[q] = start;
+            goals[q] = targets;
+            // queries from an inaccessible cell find nothing
+            expected[q] = -1;
+            if (graph.isAccessible(start)) {
+                int[] distance = distances(graph, start);
+                for (int goal: targets) {
+                    if (distance[goal] != -1 && (expected[q] == -1 || distance[goal] < expected[q]))
+                        expected[q] = distance[goal];
+                }
+            }
+        }
+        for (int round = 0; round < 2; round++) {
+            PathQueries.Results results = ForkJoinPool.commonPool().submit(() -> queries.solveAll(batch)).join();
+            for (int q = 0; q < nQueries; q++) {
+                String query = "query " + batch[q] + " in round " + round;
+                expectPath(map, graph, query + " in parallel", results.path(q), starts[q], goals[q], expected[q]);
+                expectPath(map, graph, query, queries.solve(batch[q]), starts[q], goals[q], expected[q]);
+            }
+        }
+    }
+
+    // check that `path' is a path of `length' moves from `start' to one of `goals'
+    private static void expectPath(String map, Graph graph, String query, Path path,
+                                   int start, int[] goals, int length)
+    {
+        if (length == -1) {
+            expect(path == null, map, query + " found a path, but no goal is reachable");
+            return;
+        }
+        if (path == null) {
+            expect(false, map, query + " found no path, but a goal is at distance " + length);
+            return;
+        }
+        boolean valid = path.length() == length + 1 && graph.indexOf(path.first()) == start;
+        int[] neighbors = new int[Graph.MAX_DEGREE];
+        for (int i = 1; i < path.length() && valid; i++) {
+            int count = graph.neighbors(graph.indexOf(path.node(i - 1)), neighbors);
+            valid = false;
+            for (int n = 0; n < count; n++)
+                valid |= neighbors[n] == graph.indexOf(path.node(i));
+        }
+        boolean atGoal = false;
+        for (int goal: goals)
+            atGoal |= graph.indexOf(path.last()) == goal;
+        expect(valid && atGoal, map, query + " found " + path + " instead of a path of " + length + " moves");
+    }
+
+    // breadth-first labels of the components of accessible nodes, -1 for others
+    private static int[] labels(Graph graph)
+    {
+        int[] labels = new int[graph.size()];
+        Arrays.fill(labels, -1);
+        int[] neighbors = new int[Graph.MAX_DEGREE];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int index = 0, count = 0; index < graph.size(); index++) {
+            if (!graph.isAccessible(index) || labels[index] != -1)
+                continue;
+            labels[index] = count;
+            queue.add(index);
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                int nNeighbors = graph.neighbors(node, neighbors);
+                for (int n = 0; n < nNeighbors; n++) {
+                    if (labels[neighbors[n]] == -1) {
+                        labels[neighbors[n]] = count;
+                        queue.add(neighbors[n]);
+                    }
+                }
+            }
+            count++;
+        }
+        return labels;
+    }
+
+    // breadth-first distances from node index `source', -1 if unreachable;
+    // searches leave an inaccessible source, but never enter one
+    private static int[] distances(Graph graph, int source)
+    {
+        int[] distance = new int[graph.size()];
+        Arrays.fill(distance, -1);
+        int[] neighbors = new int[Graph.MAX_DEGREE];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        distance[source] = 0;
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            int count = graph.neighbors(node, neighbors);
+            for (int n = 0; n < count; n++) {
+                if (distance[neighbors[n]] == -1) {
+                    distance[neighbors[n]] = distance[node] + 1;
+                    queue.add(neighbors[n]);
+                }
+            }
+        }
+        return distance;
+    }
+
+    // binary maps with invalid goal lists against one with a valid list
+    private static void checkBinaryGoals(java.nio.file.Path directory)
+    throws IOException
+    {
+        // . . . v
+        // . # . .
+        // v . . .
+        int[] tiles = { 0, 0, 0, 3, 0, 1, 0, 0, 3, 0, 0, 0 };
+        Map<String, int[]> lists = new LinkedHashMap<>();
+        lists.put("valid", new int[] { 3, 8 });
+        lists.put("duplicate", new int[] { 3, 3 });
+        lists.put("unordered", new int[] { 8, 3 });
+        lists.put("outside", new int[] { 3, 12 });
+        lists.put("negative", new int[] { -1, 8 });
+        lists.put("wall", new int[] { 3, 5 });
+        lists.put("no-heart", new int[] { 3, 4 });
+        List<String> maps = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry: lists.entrySet()) {
+            java.nio.file.Path file = directory.resolve(entry.getKey() + ".bmap");
+            Files.write(file, binaryMap(3, 4, tiles, entry.getValue()));
+            maps.add(file.toString());
+        }
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        for (String line: runBatch(maps, errors)) {
+            String[] fields = line.split(",");
+            String name = fields[0].substring(fields[0].lastIndexOf('/') + 1);
+            String expected = name.equals("valid.bmap") ? "found" : "error";
+            // a map must be rejected when opened, not fail later on
+            boolean rejected = errors.toString().contains(fields[0] + ": java.io.IOException");
+            expect(fields[1].equals(expected) && rejected == expected.equals("error"), name,
+                   "binary map with goals " + Arrays.toString(lists.get(name.replace(".bmap", "")))
+                   + " was " + fields[1] + (rejected ? "" : " without being rejected"));
+        }
+    }
+
+    // maps without cells, which must fail to load rather than hang
+    private static void checkEmptyMaps(java.nio.file.Path directory)
+    throws IOException
+    {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        contents.put("empty.map", new byte[0]);
+        contents.put("no-header.map", "..\n..\n".getBytes(StandardCharsets.UTF_8));
+        contents.put("zero.map", "$ 0 , 0\n".getBytes(StandardCharsets.UTF_8));
+        contents.put("no-columns.map", "$ 3 , 0\n".getBytes(StandardCharsets.UTF_8));
+        contents.put("zero.bmap", binaryMap(0, 0, new int[0], new int[0]));
+        List<String> maps = new ArrayList<>();
+        for (Map.Entry<String, byte[]> entry: contents.entrySet()) {
+            java.nio.file.Path file = directory.resolve(entry.getKey());
+            Files.write(file, entry.getValue());
+            maps.add(file.toString());
+        }
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        for (String line: runBatch(maps, errors)) {
+            String[] fields = line.split(",");
+            String name = fields[0].substring(fields[0].lastIndexOf('/') + 1);
+            boolean rejected = errors.toString().contains(fields[0] + ": java.io.IOException");
+            expect(fields[1].equals("error") && rejected, name,
+                   "map without cells was " + fields[1] + (rejected ? "" : " without being rejected"));
+        }
+    }
+
+    // large maps, parsed sequentially and in chunks
+    private static void checkChunkedParse(java.nio.file.Path directory, Random random)
+    throws IOException
+    {
+        for (int i = 0; i < LARGE_MAPS; i++) {
+            java.nio.file.Path file = directory.resolve("large" + i + ".map");
+            // the last map declares its size twice, which is parsed sequentially
+            Files.write(file, largeMap(random, i == LARGE_MAPS - 1));
+            String difference = StorageCheck.compareParses(file.toString());
+            expect(difference == null, "large map " + i, "chunked parse differs from sequential parse: " + difference);
+        }
+    }
+
+    // a random map file of over a megabyte, with CRLF and CR line ends,
+    // rows that span several lines, cells beyond the declared ones,
+    // comments, unknown symbols and bad UTF-8; with a second header in
+    // the middle if `twoHeaders'
+    private static byte[] largeMap(Random random, boolean twoHeaders)
+    {
+        int nRows = 300 + random.nextInt(100), nCols = 1500 + random.nextInt(500);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(("$ " + nRows + " , " + nCols + "\r\n").getBytes(StandardCharsets.UTF_8));
+        for (int row = 0; row < nRows + 3; row++) {
+            if (twoHeaders && row == nRows / 2)
+                out.writeBytes(("$" + nRows + "," + nCols + "\n").getBytes(StandardCharsets.UTF_8));
+            int nCells = nCols + (random.nextInt(8) == 0 ? random.nextInt(5) : 0);
+            // split the row into one to three lines
+            int first = random.nextInt(3) == 0 ? random.nextInt(nCells) : nCells;
+            int second = random.nextInt(3) == 0 ? first + random.nextInt(nCells - first + 1) : nCells;
+            for (int cell = 0; cell < nCells; cell++) {
+                if (cell == first || cell == second)
+                    endLine(out, random);
+                out.writeBytes(LARGE_SPACES[random.nextInt(LARGE_SPACES.length)]);
+                int symbol = random.nextInt(1000);
+                if (symbol < LARGE_SYMBOLS.length)
+                    out.writeBytes(LARGE_SYMBOLS[symbol]);
+                else
+                    out.write(".#*v".charAt(symbol % 4));
+            }
+            if (random.nextInt(20) == 0)
+                out.writeBytes("  @ v # x \u00e9".getBytes(StandardCharsets.UTF_8));
+            // the last line need not be terminated
+            if (row < nRows + 2)
+                endLine(out, random);
+        }
+        return out.toByteArray();
+    }
+
+    private static void endLine(ByteArrayOutputStream out, Random random)
+    {
+        out.writeBytes(LARGE_LINE_ENDS[random.nextInt(LARGE_LINE_ENDS.length)]);
+    }
+
+    // the CSV lines of a sequential batch run on `maps', without the
+    // header; the errors it reports go to `errors'
+    private static String[] runBatch(List<String> maps, ByteArrayOutputStream errors)
+    {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        PrintStream err = System.err;
+        // errors are expected: keep them out of the output
+        System.setErr(new PrintStream(errors, true));
+        try {
+            new Batch("sequential", 0).run(maps, ForkJoinPool.commonPool(), new PrintStream(lines, true));
+        } finally {
+            System.setErr(err);
+        }
+        return Arrays.stream(lines.toString().split("\n"))
+                     .filter(line -> !line.equals(Batch.HEADER))
+                     .toArray(String[]::new);
+    }
+
+    // a binary map with tile codes `tiles' and goal list `goals'
+    private static byte[] binaryMap(int nRows, int nCols, int[] tiles, int[] goals)
+    {
+        int goalsOffset = align(24 + (tiles.length + 3) / 4);
+        ByteBuffer buffer = ByteBuffer.allocate(align(goalsOffset + 4 * goals.length));
+        buffer.putInt(0x414d5a42).putInt(1).putInt(1).putInt(nRows).putInt(nCols).putInt(goals.length);
+        for (int i = 0; i < tiles.length; i++)
+            buffer.put(24 + i / 4, (byte) (buffer.get(24 + i / 4) | tiles[i] << (2 * (i % 4))));
+        for (int i = 0; i < goals.length; i++)
+            buffer.putInt(goalsOffset + 4 * i, goals[i]);
+        return buffer.array();
+    }
+
+    private static int align(int offset)
+    {
+        return (offset + 7) & ~7;
+    }
+
+    // count a check, and print `message' with `map' if it failed
+    private static void expect(boolean passed, String map, String message)
+    {
+        checks++;
+        if (!passed) {
+            failures++;
+            System.out.println("FAILED: " + message + " on map\n" + map);
+        }
+    }
+}
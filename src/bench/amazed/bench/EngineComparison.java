@@ -0,0 +1,71 @@
+package amazed.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import amazed.maze.Maze;
+import amazed.maze.Path;
+import amazed.solver.ForkJoinSolver;
+import amazed.solver.ThreadSolver;
+
+/**
+ * <code>EngineComparison</code> compares the fork/join engine of
+ * <code>ForkJoinSolver</code> with the thread-per-branch engine of
+ * <code>ThreadSolver</code>, both forking after <code>FORK_AFTER</code>
+ * steps, on the same maps with and without an animation delay.
+ * <p>
+ * With a delay, every step of the search sleeps in
+ * <code>Maze.move</code>: fork/join workers sleep with it, while
+ * thread branches sleep side by side. For every map, delay and engine,
+ * the benchmark prints the median time of <code>ROUNDS</code> solves,
+ * the nodes explored, and the length of the path found.
+ *
+ * usage: java amazed.bench.EngineComparison [DELAY_MS] MAP...
+ */
+
+public class EngineComparison
+{
+    private static final int ROUNDS = 7;
+    private static final int FORK_AFTER = 3;
+
+    public static void main(String[] args)
+    {
+        int delay = 1;
+        int first = 0;
+        if (args.length > 0 && args[0].matches("\\d+"))
+            delay = Integer.parseInt(args[first++]);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.println("map,delay_ms,engine,parallelism,median_ms,explored,path_length");
+        for (int i = first; i < args.length; i++) {
+            String map = args[i];
+            for (int d: new int[] { 0, delay }) {
+                Maze maze = new Maze(map);
+                maze.setDelay(d);
+                measure(pool, map, d, maze, "fork-join");
+                measure(pool, map, d, maze, "threads");
+            }
+        }
+    }
+
+    private static void measure(ForkJoinPool pool, String map, int delay, Maze maze, String engine)
+    {
+        long[] times = new long[ROUNDS];
+        Path path = null;
+        int explored = 0;
+        for (int r = 0; r < ROUNDS; r++) {
+            RecursiveTask<Path> solver = engine.equals("threads")
+                ? new ThreadSolver(maze, FORK_AFTER) : new ForkJoinSolver(maze, FORK_AFTER);
+            long start = System.nanoTime();
+            path = pool.invoke(solver);
+            times[r] = System.nanoTime() - start;
+            explored = solver instanceof ThreadSolver
+                ? ((ThreadSolver) solver).explored() : ((ForkJoinSolver) solver).explored();
+        }
+        if (path == null || !maze.isValidPath(path))
+            throw new IllegalStateException(engine + " found no valid path on " + map);
+        Arrays.sort(times);
+        System.out.printf("%s,%d,%s,%d,%.1f,%d,%d%n", map, delay, engine, pool.getParallelism(),
+                          times[ROUNDS / 2] / 1e6, explored, path.length());
+    }
+}
@@ -0,0 +1,59 @@
+package amazed.bench;
+
+import java.util.concurrent.ForkJoinPool;
+
+import amazed.maze.Maze;
+import amazed.maze.Path;
+import amazed.solver.BidirectionalSolver;
+import amazed.solver.SequentialSolver;
+
+/**
+ * <code>ExploredNodes</code> compares how many nodes
+ * <code>BidirectionalSolver</code> explores with how many
+ * <code>SequentialSolver</code> explores on the same maps, together
+ * with the length of the paths they return and the best time of
+ * <code>ROUNDS</code> solves.
+ *
+ * usage: java amazed.bench.ExploredNodes MAP...
+ */
+
+public class ExploredNodes
+{
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args)
+    {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.println("map,nodes,solver,explored,path_length,best_ms");
+        for (String map: args) {
+            Maze maze = new Maze(map);
+            maze.setDelay(0);
+            int nodes = maze.graph().size();
+
+            SequentialSolver sequential = null;
+            Path path = null;
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < ROUNDS; r++) {
+                sequential = new SequentialSolver(maze);
+                long start = System.nanoTime();
+                path = pool.invoke(sequential);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%s,%d,sequential,%d,%d,%.3f%n", map, nodes, sequential.explored(),
+                              path == null ? -1 : path.length(), best / 1e6);
+
+            BidirectionalSolver bidirectional = null;
+            best = Long.MAX_VALUE;
+            for (int r = 0; r < ROUNDS; r++) {
+                bidirectional = new BidirectionalSolver(maze);
+                long start = System.nanoTime();
+                path = pool.invoke(bidirectional);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            if (path != null && !maze.isValidPath(path))
+                throw new IllegalStateException("invalid bidirectional path on " + map);
+            System.out.printf("%s,%d,bidirectional,%d,%d,%.3f%n", map, nodes, bidirectional.explored(),
+                              path == null ? -1 : path.length(), best / 1e6);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package amazed.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import amazed.maze.Graph;
+import amazed.maze.Maze;
+import amazed.maze.PoolConfig;
+import amazed.solver.PathQueries;
+
+/**
+ * <code>QueryThroughput</code> measures how many point-to-point
+ * queries per second <code>PathQueries</code> answers on a loaded
+ * maze.
+ * <p>
+ * For every map, the benchmark draws <code>QUERIES</code> queries
+ * between random accessible cells, half of them to one goal cell and
+ * half to the nearest of four, with a fixed seed. It answers them all
+ * once to warm up, then <code>ROUNDS</code> times, and prints one CSV
+ * line with the best throughput of a round. With option
+ * <code>-parallelism=N,M,...</code>, it does so in a dedicated pool of
+ * every parallelism in turn, reusing the same <code>PathQueries</code>
+ * and thus the scratch buffers of threads that answered queries
+ * before; otherwise it uses the common pool.
+ *
+ * usage: java amazed.bench.QueryThroughput [-parallelism=N,...] [QUERIES] MAP...
+ */
+
+public class QueryThroughput
+{
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args)
+    {
+        int nQueries = 2000;
+        List<String> maps = new ArrayList<>();
+        List<Integer> parallelisms = new ArrayList<>();
+        for (String arg: args) {
+            if (arg.startsWith("-parallelism=")) {
+                for (String p: arg.substring("-parallelism=".length()).split(","))
+                    parallelisms.add(Integer.parseInt(p));
+            } else if (maps.isEmpty() && arg.matches("\\d+"))
+                nQueries = Integer.parseInt(arg);
+            else
+                maps.add(arg);
+        }
+        System.out.println("map,parallelism,queries,found,expanded_per_query,queries_s");
+        for (String map: maps) {
+            Maze maze = new Maze(map);
+            maze.setDelay(-1);
+            PathQueries queries = new PathQueries(maze);
+            PathQueries.Query[] batch = randomQueries(maze.graph(), nQueries, new Random(42));
+            if (parallelisms.isEmpty())
+                run(ForkJoinPool.commonPool(), map, queries, batch);
+            for (int parallelism: parallelisms) {
+                ForkJoinPool pool = new PoolConfig().parallelism(parallelism).newPool();
+                run(pool, map, queries, batch);
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void run(ForkJoinPool pool, String map, PathQueries queries, PathQueries.Query[] batch)
+    {
+        pool.submit(() -> queries.solveAll(batch)).join();
+        PathQueries.Results best = null;
+        for (int r = 0; r < ROUNDS; r++) {
+            PathQueries.Results results = pool.submit(() -> queries.solveAll(batch)).join();
+            if (best == null || results.queriesPerSecond() > best.queriesPerSecond())
+                best = results;
+        }
+        int found = 0;
+        for (int i = 0; i < best.count(); i++) {
+            if (best.path(i) != null)
+                found++;
+        }
+        long expanded = queries.expanded() / queries.answered();
+        System.out.printf("%s,%d,%d,%d,%d,%.0f%n", map, pool.getParallelism(), best.count(), found,
+                          expanded, best.queriesPerSecond());
+    }
+
+    // `count' queries between accessible cells of `graph'
+    private static PathQueries.Query[] randomQueries(Graph graph, int count, Random random)
+    {
+        int[] cells = new int[graph.size()];
+        int nCells = 0;
+        for (int index = 0; index < graph.size(); index++) {
+            if (graph.isAccessible(index))
+                cells[nCells++] = index;
+        }
+        PathQueries.Query[] queries = new PathQueries.Query[count];
+        for (int q = 0; q < count; q++) {
+            int start = cells[random.nextInt(nCells)];
+            int nGoals = q % 2 == 0 ? 1 : 4;
+            int[] rows = new int[nGoals], cols = new int[nGoals];
+            for (int i = 0; i < nGoals; i++) {
+                int goal = cells[random.nextInt(nCells)];
+                rows[i] = graph.row(goal);
+                cols[i] = graph.col(goal);
+            }
+            queries[q] = new PathQueries.Query(graph.row(start), graph.col(start), rows, cols);
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,96 @@
+package amazed.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import amazed.maze.Maze;
+import amazed.maze.Path;
+import amazed.solver.Deadline;
+import amazed.solver.ForkJoinSolver;
+
+/**
+ * <code>SolveLatency</code> measures the distribution of the latency
+ * of fork/join solves, from the call to its return, in a single
+ * warmed-up JVM.
+ * <p>
+ * For every map and for <code>ForkJoinSolver</code> forking after 3
+ * steps and adaptively, the benchmark runs <code>ROUNDS</code> solves
+ * in the common pool after <code>ROUNDS / 10</code> warm-up solves,
+ * and prints one CSV line with the median, 90th and 99th percentile,
+ * and maximum latency. With option <code>-delay=MS</code>, every step
+ * of the search sleeps <code>MS</code> milliseconds, as when animated,
+ * so that the time tasks take to notice that the search is over
+ * dominates. With option <code>-timeout=MS</code>, every solve has a
+ * deadline <code>MS</code> milliseconds after it starts; the line then
+ * also counts the solves that timed out, and latency beyond the
+ * timeout measures how late searches stop.
+ *
+ * usage: java amazed.bench.SolveLatency [-delay=MS] [-timeout=MS] [ROUNDS] MAP...
+ */
+
+public class SolveLatency
+{
+    public static void main(String[] args)
+    {
+        int rounds = 200;
+        int delay = -1;
+        long timeout = 0;
+        List<String> maps = new ArrayList<>();
+        for (String arg: args) {
+            if (arg.startsWith("-delay="))
+                delay = Integer.parseInt(arg.substring("-delay=".length()));
+            else if (arg.startsWith("-timeout="))
+                timeout = Long.parseLong(arg.substring("-timeout=".length()));
+            else if (maps.isEmpty() && arg.matches("\\d+"))
+                rounds = Integer.parseInt(arg);
+            else
+                maps.add(arg);
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.println("map,solver,parallelism,delay_ms,timeout_ms,p50_ms,p90_ms,p99_ms,max_ms,timed_out");
+        for (String map: maps) {
+            Maze maze = new Maze(map);
+            maze.setDelay(delay);
+            measure(pool, map, maze, "parallel-3", rounds, delay, timeout);
+            measure(pool, map, maze, "parallel-auto", rounds, delay, timeout);
+        }
+    }
+
+    private static void measure(ForkJoinPool pool, String map, Maze maze, String solver,
+                                int rounds, int delay, long timeout)
+    {
+        for (int r = 0; r < rounds / 10; r++)
+            solve(pool, maze, solver, timeout);
+        long[] times = new long[rounds];
+        int timedOut = 0;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            ForkJoinSolver task = solve(pool, maze, solver, timeout);
+            times[r] = System.nanoTime() - start;
+            if (task.isTimedOut())
+                timedOut++;
+        }
+        Arrays.sort(times);
+        System.out.printf("%s,%s,%d,%d,%d,%.2f,%.2f,%.2f,%.2f,%d%n", map, solver, pool.getParallelism(),
+                          Math.max(delay, 0), timeout, times[rounds / 2] / 1e6,
+                          times[rounds * 9 / 10] / 1e6, times[rounds * 99 / 100] / 1e6,
+                          times[rounds - 1] / 1e6, timedOut);
+    }
+
+    // a finished solve, whose path must be valid unless it timed out
+    private static ForkJoinSolver solve(ForkJoinPool pool, Maze maze, String solver, long timeout)
+    {
+        ForkJoinSolver task = solver.equals("parallel-auto")
+            ? new ForkJoinSolver(maze, true) : new ForkJoinSolver(maze, 3);
+        Deadline deadline = timeout > 0 ? Deadline.after(timeout, TimeUnit.MILLISECONDS) : Deadline.NONE;
+        task.setDeadline(deadline);
+        Path path = pool.invoke(task);
+        deadline.release();
+        if (!task.isTimedOut() && (path == null || !maze.isValidPath(path)))
+            throw new IllegalStateException(solver + " found no valid path on " + maze);
+        return task;
+    }
+}
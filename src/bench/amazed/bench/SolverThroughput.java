@@ -0,0 +1,115 @@
+package amazed.bench;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+import amazed.maze.Maze;
+import amazed.maze.Path;
+import amazed.maze.PoolConfig;
+import amazed.solver.AStarSolver;
+import amazed.solver.BidirectionalSolver;
+import amazed.solver.ForkJoinSolver;
+import amazed.solver.ParallelAStarSolver;
+import amazed.solver.ParallelBfsSolver;
+import amazed.solver.SequentialSolver;
+
+/**
+ * <code>SolverThroughput</code> measures how many solves per second
+ * every solver completes on a set of maps, in a single warmed-up JVM
+ * and without animation.
+ * <p>
+ * For every map and solver, the benchmark first warms up by running
+ * solves for <code>MILLIS</code> milliseconds, then repeats solves for
+ * another <code>MILLIS</code> milliseconds, measuring. It prints one CSV line per
+ * combination with the throughput, the speedup over
+ * <code>SequentialSolver</code> on the same map, and the length of
+ * the last path found, which must be valid.
+ * <p>
+ * Solves run in the common pool, or, with option
+ * <code>-parallelism=N,M,...</code>, in a dedicated pool of every
+ * parallelism in turn, to measure how solvers scale with the number of
+ * workers.
+ *
+ * usage: java amazed.bench.SolverThroughput [-parallelism=N,...] [MILLIS] MAP...
+ */
+
+public class SolverThroughput
+{
+    private static Map<String, Function<Maze, RecursiveTask<Path>>> solvers()
+    {
+        Map<String, Function<Maze, RecursiveTask<Path>>> solvers = new LinkedHashMap<>();
+        solvers.put("sequential", maze -> new SequentialSolver(maze));
+        solvers.put("parallel-0", maze -> new ForkJoinSolver(maze, 0));
+        solvers.put("parallel-3", maze -> new ForkJoinSolver(maze, 3));
+        solvers.put("parallel-9", maze -> new ForkJoinSolver(maze, 9));
+        solvers.put("parallel-auto", maze -> new ForkJoinSolver(maze, true));
+        solvers.put("bfs-parallel", maze -> new ParallelBfsSolver(maze));
+        solvers.put("bidirectional", maze -> new BidirectionalSolver(maze));
+        solvers.put("astar", maze -> new AStarSolver(maze));
+        solvers.put("astar-parallel", maze -> new ParallelAStarSolver(maze));
+        return solvers;
+    }
+
+    public static void main(String[] args)
+    {
+        long millis = 2000;
+        List<String> maps = new ArrayList<>();
+        List<Integer> parallelisms = new ArrayList<>();
+        for (String arg: args) {
+            if (arg.startsWith("-parallelism=")) {
+                for (String p: arg.substring("-parallelism=".length()).split(","))
+                    parallelisms.add(Integer.parseInt(p));
+            } else if (maps.isEmpty() && arg.matches("\\d+"))
+                millis = Long.parseLong(arg);
+            else
+                maps.add(arg);
+        }
+        if (maps.isEmpty()) {
+            maps.add("maps/small.map");
+            maps.add("maps/medium.map");
+        }
+        System.out.println("map,solver,parallelism,solves_s,speedup,path_length");
+        if (parallelisms.isEmpty())
+            run(ForkJoinPool.commonPool(), maps, millis);
+        for (int parallelism: parallelisms) {
+            ForkJoinPool pool = new PoolConfig().parallelism(parallelism).newPool();
+            run(pool, maps, millis);
+            pool.shutdown();
+        }
+    }
+
+    private static void run(ForkJoinPool pool, List<String> maps, long millis)
+    {
+        for (String map: maps) {
+            Maze maze = new Maze(map);
+            maze.setDelay(0);
+            double sequential = 0;
+            for (Map.Entry<String, Function<Maze, RecursiveTask<Path>>> entry: solvers().entrySet()) {
+                Path path = null;
+                long warmup = System.nanoTime() + millis * 1_000_000L;
+                do {
+                    path = pool.invoke(entry.getValue().apply(maze));
+                } while (System.nanoTime() < warmup);
+                long solves = 0;
+                long start = System.nanoTime(), deadline = start + millis * 1_000_000L, now;
+                do {
+                    path = pool.invoke(entry.getValue().apply(maze));
+                    solves++;
+                    now = System.nanoTime();
+                } while (now < deadline);
+                if (path != null && !maze.isValidPath(path))
+                    throw new IllegalStateException(entry.getKey() + " returned an invalid path on " + map);
+                double throughput = solves * 1e9 / (now - start);
+                if (entry.getKey().equals("sequential"))
+                    sequential = throughput;
+                System.out.printf("%s,%s,%d,%.1f,%.2f,%d%n", map, entry.getKey(), pool.getParallelism(),
+                                  throughput, throughput / sequential, path == null ? -1 : path.length());
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package amazed.bench;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import amazed.solver.AtomicBitSet;
+
+/**
+ * <code>VisitedContention</code> measures the throughput of claiming
+ * node indices concurrently, comparing the monitor-guarded
+ * <code>HashSet&lt;Integer&gt;</code> formerly used by
+ * <code>ForkJoinSolver</code> with <code>AtomicBitSet</code>.
+ * <p>
+ * For every pool size from 1 to <code>MAX_THREADS</code>, as many
+ * tasks as pool threads each try to claim every one of
+ * <code>NODES</code> indices, starting at evenly spread offsets. Each
+ * index must be claimed exactly once overall; the benchmark checks
+ * this and prints one CSV line per configuration.
+ *
+ * usage: java amazed.bench.VisitedContention [NODES] [MAX_THREADS] [ROUNDS]
+ */
+
+public class VisitedContention
+{
+    private interface Claimer
+    {
+        boolean claim(int index);
+    }
+
+    private static class MonitorClaimer
+        implements Claimer
+    {
+        private final Set<Integer> visited = new HashSet<>();
+
+        public boolean claim(int index)
+        {
+            synchronized (visited) {
+                if (!visited.contains(index)) {
+                    visited.add(index);
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    private static class AtomicClaimer
+        implements Claimer
+    {
+        private final AtomicBitSet visited;
+
+        AtomicClaimer(int nodes)
+        {
+            visited = new AtomicBitSet(nodes);
+        }
+
+        public boolean claim(int index)
+        {
+            return visited.claim(index);
+        }
+    }
+
+    private static class ClaimAll
+        extends RecursiveTask<Long>
+    {
+        private final Claimer claimer;
+        private final int nodes, from;
+
+        ClaimAll(Claimer claimer, int nodes, int from)
+        {
+            this.claimer = claimer;
+            this.nodes = nodes;
+            this.from = from;
+        }
+
+        @Override
+        protected Long compute()
+        {
+            long claimed = 0;
+            for (int i = 0; i < nodes; i++) {
+                int index = from + i;
+                if (index >= nodes)
+                    index -= nodes;
+                if (claimer.claim(index))
+                    claimed++;
+            }
+            return claimed;
+        }
+    }
+
+    private static class Round
+        extends RecursiveTask<Long>
+    {
+        private final Claimer claimer;
+        private final int nodes, tasks;
+
+        Round(Claimer claimer, int nodes, int tasks)
+        {
+            this.claimer = claimer;
+            this.nodes = nodes;
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected Long compute()
+        {
+            ClaimAll[] all = new ClaimAll[tasks];
+            for (int t = 0; t < tasks; t++) {
+                all[t] = new ClaimAll(claimer, nodes, (int) ((long) t * nodes / tasks));
+                all[t].fork();
+            }
+            long claimed = 0;
+            for (ClaimAll task: all)
+                claimed += task.join();
+            return claimed;
+        }
+    }
+
+    // runs `rounds' rounds and returns the best time in nanoseconds
+    private static long measure(ForkJoinPool pool, boolean atomic, int nodes, int rounds)
+    {
+        int tasks = pool.getParallelism();
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            Claimer claimer = atomic ? new AtomicClaimer(nodes) : new MonitorClaimer();
+            long start = System.nanoTime();
+            long claimed = pool.invoke(new Round(claimer, nodes, tasks));
+            long elapsed = System.nanoTime() - start;
+            if (claimed != nodes)
+                throw new IllegalStateException("claimed " + claimed + " of " + nodes + " nodes");
+            best = Math.min(best, elapsed);
+        }
+        return best;
+    }
+
+    public static void main(String[] args)
+    {
+        int nodes = args.length >= 1 ? Integer.parseInt(args[0]) : 1 << 20;
+        int maxThreads = args.length >= 2 ? Integer.parseInt(args[1])
+                                           : Runtime.getRuntime().availableProcessors();
+        int rounds = args.length >= 3 ? Integer.parseInt(args[2]) : 10;
+        System.out.println("threads,monitor_ms,atomic_ms,monitor_Mclaims_s,atomic_Mclaims_s");
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long attempts = (long) nodes * threads;
+            long monitor = measure(pool, false, nodes, rounds);
+            long atomic = measure(pool, true, nodes, rounds);
+            System.out.printf("%d,%.2f,%.2f,%.1f,%.1f%n", threads,
+                              monitor / 1e6, atomic / 1e6,
+                              attempts * 1e3 / monitor, attempts * 1e3 / atomic);
+            pool.shutdown();
+        }
+    }
+}
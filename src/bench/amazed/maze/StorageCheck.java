@@ -0,0 +1,131 @@
+package amazed.maze;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <code>StorageCheck</code> compares the alternative ways in which
+ * this package loads and stores a map, for <code>CrossCheck</code>:
+ * parsing a large map in chunks against parsing it sequentially, and
+ * the graph of a board with its tiles off the heap against the graph
+ * of the same board on the heap, on maps smaller than the ones that
+ * trigger either by default.
+ * It lives in package <code>amazed.maze</code> to reach the
+ * package-private loading classes, and reports every difference as a
+ * message rather than counting it, so that the caller counts checks
+ * and failures as it does for its own.
+ */
+
+public final class StorageCheck
+{
+    private StorageCheck()
+    {
+    }
+
+    /**
+     * Parses map file <code>filename</code> sequentially, in a pool of
+     * one worker, and in chunks, in a pool of four, and compares the
+     * two results: size, tiles, goals, and reports of unrecognized
+     * symbols.
+     *
+     * @param filename   the name of a map file of at least a megabyte
+     * @return           the first difference found, or <code>null</code>
+     *                   if there is none
+     * @throws IOException   if the file cannot be read
+     */
+    public static String compareParses(String filename)
+    throws IOException
+    {
+        ByteArrayOutputStream sequentialReports = new ByteArrayOutputStream();
+        ByteArrayOutputStream chunkedReports = new ByteArrayOutputStream();
+        MapParser sequential = parse(filename, 1, sequentialReports);
+        MapParser chunked = parse(filename, 4, chunkedReports);
+        if (sequential.rows() != chunked.rows() || sequential.cols() != chunked.cols())
+            return "size " + chunked.rows() + "," + chunked.cols() + " instead of "
+                   + sequential.rows() + "," + sequential.cols();
+        for (int index = 0; index < sequential.rows() * sequential.cols(); index++) {
+            if (sequential.tile(index) != chunked.tile(index))
+                return "tile " + chunked.tile(index) + " instead of " + sequential.tile(index)
+                       + " at row " + index / sequential.cols() + " column " + index % sequential.cols();
+        }
+        if (!Arrays.equals(sequential.goals(), chunked.goals()))
+            return chunked.goals().length + " goals instead of " + sequential.goals().length
+                   + ", or in another order";
+        if (!sequentialReports.toString().equals(chunkedReports.toString()))
+            return "reports\n" + chunkedReports + "instead of\n" + sequentialReports;
+        return null;
+    }
+
+    /**
+     * Builds a board on the tiles of map file <code>filename</code>,
+     * and a board with the same node identifiers on a copy of the
+     * tiles off the heap, and compares the graphs of the two boards:
+     * the tiles, the goals, the accessible nodes and the neighbors of
+     * every node, in order, and the conversion of identifiers both
+     * ways.
+     *
+     * @param filename   the name of a map file
+     * @param denseIds   whether node identifiers are node indices
+     * @return           the first difference found, or <code>null</code>
+     *                   if there is none
+     * @throws IOException   if the file cannot be read
+     */
+    public static String compareOffHeap(String filename, boolean denseIds)
+    throws IOException
+    {
+        Board heap = new Board(Board.read(filename), denseIds, false);
+        Board offHeap = new Board(heap, true);
+        if (!offHeap.getTiles().isOffHeap())
+            return "tiles were not copied off the heap";
+        Graph graph = new Graph(heap), implicit = new Graph(offHeap);
+        if (!Arrays.equals(graph.goals(), implicit.goals()))
+            return "goals " + Arrays.toString(implicit.goals()) + " instead of " + Arrays.toString(graph.goals());
+        int[] neighbors = new int[Graph.MAX_DEGREE], implicitNeighbors = new int[Graph.MAX_DEGREE];
+        for (int index = 0; index < graph.size(); index++) {
+            String node = "node " + index;
+            if (heap.getTiles().tile(index) != offHeap.getTiles().tile(index))
+                return "tile " + offHeap.getTiles().tile(index) + " instead of " + heap.getTiles().tile(index)
+                       + " at " + node;
+            if (graph.isGoal(index) != implicit.isGoal(index))
+                return node + (graph.isGoal(index) ? " is not" : " is") + " a goal off the heap";
+            if (graph.isAccessible(index) != implicit.isAccessible(index))
+                return node + (graph.isAccessible(index) ? " is not" : " is") + " accessible off the heap";
+            int count = graph.neighbors(index, neighbors);
+            int implicitCount = implicit.neighbors(index, implicitNeighbors);
+            if (!Arrays.equals(neighbors, 0, count, implicitNeighbors, 0, implicitCount))
+                return node + " has neighbors " + Arrays.toString(Arrays.copyOf(implicitNeighbors, implicitCount))
+                       + " instead of " + Arrays.toString(Arrays.copyOf(neighbors, count));
+            int id = graph.idOf(index);
+            if (implicit.idOf(index) != id)
+                return node + " has identifier " + implicit.idOf(index) + " instead of " + id;
+            if (graph.indexOf(id) != index || implicit.indexOf(id) != index)
+                return "identifier " + id + " of " + node + " converts back to " + graph.indexOf(id)
+                       + " on the heap and " + implicit.indexOf(id) + " off it";
+        }
+        // identifiers are in [-size, size); a few beyond either end are none
+        for (int id = -graph.size() - 2; id < graph.size() + 2; id++) {
+            if (graph.hasId(id) != implicit.hasId(id))
+                return "identifier " + id + (graph.hasId(id) ? " is not" : " is") + " a node off the heap";
+        }
+        return null;
+    }
+
+    // map file `filename' parsed in a new pool of `parallelism' workers,
+    // with its reports written to `reports'
+    private static MapParser parse(String filename, int parallelism, ByteArrayOutputStream reports)
+    throws IOException
+    {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(reports, true));
+        try {
+            return MapParser.parse(filename, pool);
+        } finally {
+            System.setOut(out);
+            pool.shutdown();
+        }
+    }
+}
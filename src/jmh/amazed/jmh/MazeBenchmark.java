@@ -0,0 +1,98 @@
+package amazed.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import amazed.maze.Graph;
+import amazed.maze.Maze;
+
+/**
+ * <code>MazeBenchmark</code> measures the maze primitives that every
+ * solver relies on: loading a map, and querying the neighbors of a
+ * node.
+ * <p>
+ * Benchmark <code>load</code> reads the map file into a board and
+ * compiles its graph, as the first query to a new maze does. The two
+ * <code>neighbors</code> benchmarks query the neighbors of every
+ * accessible node once, through the <code>Set</code>-returning method
+ * and through the allocation-free one respectively, and thus report
+ * the time of a full sweep of the maze. Every benchmark runs with
+ * random and with dense node identifiers.
+ * <p>
+ * Maps are given relative to the repository root, from which JMH must
+ * be run; other maps can be passed with <code>-p map=...</code>.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xss512m", "-Djava.awt.headless=true"})
+public class MazeBenchmark
+{
+    @Param({"maps/small.map", "maps/medium.map",
+            "hand-in/distinction-assignment/maps/large.map",
+            "hand-in/distinction-assignment/maps/verylarge.map"})
+    public String map;
+
+    @Param({"false", "true"})
+    public boolean denseIds;
+
+    private Maze maze;
+    // identifiers of all accessible nodes
+    private int[] ids;
+
+    @Setup
+    public void setup()
+    {
+        maze = new Maze(map, denseIds);
+        maze.setDelay(0);
+        Graph graph = maze.graph();
+        int count = 0;
+        for (int i = 0; i < graph.size(); i++)
+            if (graph.isAccessible(i))
+                count++;
+        ids = new int[count];
+        count = 0;
+        for (int i = 0; i < graph.size(); i++)
+            if (graph.isAccessible(i))
+                ids[count++] = graph.idOf(i);
+    }
+
+    @Benchmark
+    public Graph load()
+    {
+        return new Maze(map, denseIds).graph();
+    }
+
+    @Benchmark
+    public void neighborsSet(Blackhole blackhole)
+    {
+        for (int id: ids)
+            blackhole.consume(maze.neighbors(id));
+    }
+
+    @Benchmark
+    public void neighborsBuffer(Blackhole blackhole)
+    {
+        int[] buffer = new int[Graph.MAX_DEGREE];
+        for (int id: ids) {
+            int count = maze.neighbors(id, buffer);
+            for (int n = 0; n < count; n++)
+                blackhole.consume(buffer[n]);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package amazed.jmh;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import amazed.maze.Maze;
+import amazed.maze.Path;
+import amazed.solver.ForkJoinSolver;
+import amazed.solver.SequentialSolver;
+
+/**
+ * <code>SolverBenchmark</code> measures the time of one complete
+ * search by <code>SequentialSolver</code> and by
+ * <code>ForkJoinSolver</code>, without animation.
+ * <p>
+ * Every benchmark solves a maze loaded once per trial, with a fresh
+ * solver per invocation as <code>Amazed</code> does. The sequential
+ * solver is parameterized only by the map; the fork/join solver also
+ * by <code>forkAfter</code>, where <code>auto</code> selects adaptive
+ * forking, and by the parallelism of a dedicated pool.
+ * <p>
+ * Maps are given relative to the repository root, from which JMH must
+ * be run; other maps can be passed with <code>-p map=...</code>.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss512m", "-Djava.awt.headless=true"})
+public class SolverBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class MazeState
+    {
+        @Param({"maps/small.map", "maps/medium.map",
+                "hand-in/distinction-assignment/maps/large.map",
+                "hand-in/distinction-assignment/maps/verylarge.map"})
+        public String map;
+
+        Maze maze;
+
+        @Setup
+        public void setup()
+        {
+            maze = new Maze(map);
+            maze.setDelay(0);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PoolState
+    {
+        @Param({"1", "2", "4"})
+        public int parallelism;
+
+        @Param({"0", "3", "9", "auto"})
+        public String forkAfter;
+
+        ForkJoinPool pool;
+
+        @Setup
+        public void setup()
+        {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            pool.shutdown();
+        }
+
+        ForkJoinSolver newSolver(Maze maze)
+        {
+            if (forkAfter.equals("auto"))
+                return new ForkJoinSolver(maze, true);
+            return new ForkJoinSolver(maze, Integer.parseInt(forkAfter));
+        }
+    }
+
+    @Benchmark
+    public Path sequential(MazeState state)
+    {
+        return ForkJoinPool.commonPool().invoke(new SequentialSolver(state.maze));
+    }
+
+    @Benchmark
+    public Path forkJoin(MazeState state, PoolState pool)
+    {
+        return pool.pool.invoke(pool.newSolver(state.maze));
+    }
+}
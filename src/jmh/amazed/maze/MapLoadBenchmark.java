@@ -0,0 +1,122 @@
+package amazed.maze;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>MapLoadBenchmark</code> measures the time to load map files
+ * of growing size: parsing alone, with <code>MapParser</code>,
+ * building the whole <code>Board</code> from the text map and from
+ * its binary form, copying parsed tiles off the heap, and compiling
+ * the graph of the board, with adjacency arrays or implicit
+ * adjacency.
+ * <p>
+ * Every trial writes a random square map of <code>side</code> rows
+ * and columns, in the same layout as the shipped maps, to a temporary
+ * file, and converts it to a binary map. The benchmark lives in
+ * package <code>amazed.maze</code> to reach the package-private
+ * loading classes.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class MapLoadBenchmark
+{
+    @Param({"256", "1024", "2048"})
+    public int side;
+
+    private Path map;
+    private Path binary;
+    private Board board;
+    private Board offHeapBoard;
+
+    @Setup
+    public void setup()
+    throws IOException
+    {
+        map = Files.createTempFile("amazed", ".map");
+        Random random = new Random(side);
+        String symbols = "....#*";
+        try (BufferedWriter out = Files.newBufferedWriter(map)) {
+            out.write("$ " + side + " , " + side + "\n");
+            for (int row = 0; row < side; row++) {
+                for (int col = 0; col < side; col++) {
+                    out.write(' ');
+                    out.write(row + col == 0 ? '.' : symbols.charAt(random.nextInt(symbols.length())));
+                }
+                out.write('\n');
+            }
+        }
+        binary = Files.createTempFile("amazed", ".bmap");
+        BinaryMap.write(MapParser.parse(map.toString()), BinaryMap.GOALS | BinaryMap.WALLS, binary.toString());
+        board = new Board(binary.toString());
+        offHeapBoard = new Board(MapParser.parse(map.toString()), false, true);
+    }
+
+    @TearDown
+    public void tearDown()
+    throws IOException
+    {
+        Files.delete(map);
+        Files.delete(binary);
+    }
+
+    @Benchmark
+    public MapParser parse()
+    throws IOException
+    {
+        return MapParser.parse(map.toString());
+    }
+
+    @Benchmark
+    public Board board()
+    {
+        return new Board(map.toString());
+    }
+
+    @Benchmark
+    public Board binaryBoard()
+    {
+        return new Board(binary.toString());
+    }
+
+    @Benchmark
+    public OffHeapTiles offHeap()
+    throws IOException
+    {
+        return OffHeapTiles.copyOf(MapParser.parse(map.toString()));
+    }
+
+    @Benchmark
+    public Graph graph()
+    {
+        return new Graph(board);
+    }
+
+    @Benchmark
+    public Graph implicitGraph()
+    {
+        return new Graph(offHeapBoard);
+    }
+}
@@ -0,0 +1,149 @@
+package amazed;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import amazed.maze.Amazed;
+import amazed.maze.Batch;
+import amazed.maze.PoolConfig;
+
+
+public class BatchMain
+{
+    private static void printUsageAndExit()
+    {
+        String className = MethodHandles.lookup().lookupClass().getName();
+        System.out.println("A-mazed batch: solves many maps in one JVM, printing one CSV line per map.\n"
+                           + "\n"
+                           + "usage: java " + className + " [OPTIONS] [MAP...]\n"
+                           + "\n"
+                           + " MAP    filename with map file\n"
+                           + "\n"
+                           + "options of the batch:\n"
+                           + " -solver SOLVER       solver of every map, as in amazed.Main (default: sequential)\n"
+                           + " -manifest FILE       also solve the maps listed in FILE, one per line,\n"
+                           + "                      skipping blank lines and lines starting with '#';\n"
+                           + "                      '-' reads the list from standard input\n"
+                           + " -in-flight N         load or solve at most N maps at the same time\n"
+                           + "                      (default: twice the parallelism)\n"
+                           + " -timeout MS          stop searching a map after MS milliseconds\n"
+                           + " -cache DIR           directory of the map cache (default: no cache)\n"
+                           + "\n"
+                           + "options of the pool shared by all maps:\n"
+                           + Main.POOL_OPTIONS_USAGE + "\n"
+                           + "\n"
+                           + "totals and throughput are printed to standard error at the end");
+        System.exit(0);
+    }
+
+    private static String solverName = Amazed.SEQUENTIAL;
+    private static int forkAfter = 0;
+    private static String manifest = null;
+    private static int inFlight = -1;
+    private static long timeout = 0;
+    private static String cache = null;
+    private static PoolConfig poolConfig = new PoolConfig();
+
+    // parse the leading options, and return the maps that follow
+    private static String[] parseOptions(String[] args)
+    {
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("-"); i++) {
+                switch (args[i]) {
+                case "-solver":
+                    parseSolver(args[++i]);
+                    break;
+                case "-manifest":
+                    manifest = args[++i];
+                    break;
+                case "-in-flight":
+                    inFlight = Integer.parseInt(args[++i]);
+                    break;
+                case "-timeout":
+                    timeout = Long.parseLong(args[++i]);
+                    if (timeout <= 0)
+                        printUsageAndExit();
+                    break;
+                case "-cache":
+                    cache = args[++i];
+                    break;
+                default:
+                    if ((i = Main.parsePoolOption(args, i, poolConfig)) < 0)
+                        printUsageAndExit();
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            printUsageAndExit();
+        }
+        return Arrays.copyOfRange(args, i, args.length);
+    }
+
+    // set solverName and forkAfter from `solver', as amazed.Main does
+    private static void parseSolver(String solver)
+    {
+        if (!solver.equals(Amazed.PARALLEL) && Amazed.isSolver(solver))
+            solverName = solver;
+        else if (solver.startsWith(Amazed.PARALLEL + "-")) {
+            solverName = Amazed.PARALLEL;
+            forkAfter = Integer.parseInt(solver.substring(Amazed.PARALLEL.length() + 1));
+        } else
+            printUsageAndExit();
+    }
+
+    // the maps listed in file `manifest', or standard input if "-"
+    private static List<String> readManifest(String manifest)
+    throws IOException
+    {
+        List<String> maps = new ArrayList<>();
+        try (BufferedReader in = manifest.equals("-")
+             ? new BufferedReader(new InputStreamReader(System.in))
+             : Files.newBufferedReader(Paths.get(manifest))) {
+            for (String line; (line = in.readLine()) != null; ) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#"))
+                    maps.add(line);
+            }
+        }
+        return maps;
+    }
+
+    public static void main(String[] args)
+    {
+        List<String> maps = new ArrayList<>(Arrays.asList(parseOptions(args)));
+        if (manifest != null) {
+            try {
+                maps.addAll(readManifest(manifest));
+            } catch (IOException e) {
+                System.err.println("Error: cannot read manifest " + manifest + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        if (maps.isEmpty())
+            printUsageAndExit();
+        Batch batch = new Batch(solverName, forkAfter).cache(cache).timeout(timeout, TimeUnit.MILLISECONDS);
+        ForkJoinPool pool = null;
+        try {
+            if (inFlight != -1)
+                batch.inFlight(inFlight);
+            pool = poolConfig.newPool();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        Batch.Report report = batch.run(maps, pool, System.out);
+        pool.shutdown();
+        System.out.flush();
+        System.err.println(report);
+        System.exit(report.failed() > 0 ? 1 : 0);
+    }
+}
@@ -1,8 +1,11 @@
 package amazed;
 
 import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import amazed.maze.Amazed;
+import amazed.maze.PoolConfig;
 
 
 public class Main
@@ -12,21 +15,91 @@ public class Main
         String className = MethodHandles.lookup().lookupClass().getName();
         System.out.println("A-mazed: finds and displays paths to goal in a maze.\n"
                            + "\n"
-                           + "usage: java " + className + " MAP [SOLVER] [PERIOD]\n"
+                           + "usage: java " + className + " [OPTIONS] MAP [SOLVER] [PERIOD] [CACHE]\n"
                            + "\n"
                            + " MAP    filename with map file\n"
-                           + " SOLVER 'sequential' or 'parallel-N' solver, forking after N steps\n"
-                           + " PERIOD time in millisecond between steps (0: don't animate)");
+                           + " SOLVER 'sequential', 'parallel-N' solver, forking after N steps,\n"
+                           + "        'parallel-auto' solver, forking when workers are idle,\n"
+                           + "        'bfs-parallel' shortest-path solver, 'bidirectional',\n"
+                           + "        'astar' and 'astar-parallel' shortest-path solvers,\n"
+                           + "        'junction' shortest-path solver on the junction graph,\n"
+                           + "        or 'threads' solver, running branches on threads of their own\n"
+                           + " PERIOD time in millisecond between steps (0: don't animate)\n"
+                           + " CACHE  directory of the map cache (default: no cache)\n"
+                           + "\n"
+                           + "options of the search:\n"
+                           + " -timeout MS          stop searching after MS milliseconds\n"
+                           + "\n"
+                           + "options of the pool that loads and solves the maze:\n"
+                           + POOL_OPTIONS_USAGE);
         System.exit(0);
     }
 
-    private final static String SEQUENTIAL = "sequential";
-    private final static String PARALLEL = "parallel";
+    private final static String SEQUENTIAL = Amazed.SEQUENTIAL;
+    private final static String PARALLEL = Amazed.PARALLEL;
 
     private static String map;
-    private static boolean sequential = true;
+    private static String solverName = SEQUENTIAL;
     private static int forkAfter = 0;
     private static int period = 25;
+    private static String cache = null;
+    private static PoolConfig poolConfig = new PoolConfig();
+    private static long timeout = 0;
+
+    // parse the leading options into poolConfig and timeout, and return
+    // the other arguments
+    private static String[] parseOptions(String[] args)
+    {
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("-"); i++) {
+                if (args[i].equals("-timeout")) {
+                    timeout = Long.parseLong(args[++i]);
+                    if (timeout <= 0)
+                        printUsageAndExit();
+                } else if ((i = parsePoolOption(args, i, poolConfig)) < 0)
+                    printUsageAndExit();
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            printUsageAndExit();
+        }
+        return Arrays.copyOfRange(args, i, args.length);
+    }
+
+    /**
+     * Usage of the options parsed by <code>parsePoolOption</code>.
+     */
+    static final String POOL_OPTIONS_USAGE =
+        " -parallelism N       N workers (default: number of processors)\n"
+        + " -async               run forked tasks in FIFO order\n"
+        + " -max-threads N       at most N threads, counting spare threads\n"
+        + "                      started while workers block\n"
+        + " -saturation POLICY   'reject' (default) or 'continue' when more\n"
+        + "                      than the maximum threads are needed\n"
+        + "workers take the stack size set by the JVM option -Xss";
+
+    // parse the pool option at args[i], and its argument, into `config';
+    // return the index of the last argument used, or -1 if args[i] is
+    // not a pool option
+    static int parsePoolOption(String[] args, int i, PoolConfig config)
+    {
+        switch (args[i]) {
+        case "-parallelism":
+            config.parallelism(Integer.parseInt(args[++i]));
+            return i;
+        case "-async":
+            config.asyncMode(true);
+            return i;
+        case "-max-threads":
+            config.maxThreads(Integer.parseInt(args[++i]));
+            return i;
+        case "-saturation":
+            config.saturation(PoolConfig.Saturation.valueOf(args[++i].toUpperCase()));
+            return i;
+        default:
+            return -1;
+        }
+    }
 
     private static void parseArguments(String[] args)
     {
@@ -34,10 +107,10 @@ public class Main
             map = args[0];
             if (args.length >= 2) {
                 String solver = args[1];
-                if (solver.equals(SEQUENTIAL))
-                    sequential = true;
+                if (!solver.equals(PARALLEL) && Amazed.isSolver(solver))
+                    solverName = solver;
                 else {
-                    sequential = false;
+                    solverName = PARALLEL;
                     String[] splitSolver = solver.split("-");
                     if (splitSolver.length == 2) {
                         if (splitSolver[0].equals(PARALLEL)) {
@@ -58,6 +131,8 @@ public class Main
                         printUsageAndExit();
                     }
                 }
+                if (args.length >= 4)
+                    cache = args[3];
             }
         } else
             printUsageAndExit();
@@ -66,10 +141,19 @@ public class Main
     public static void main(String[] args)
     throws InterruptedException
     {
-        parseArguments(args);
-        Amazed amazed = new Amazed(map, sequential, forkAfter, period);
+        parseArguments(parseOptions(args));
+        Amazed amazed = null;
+        try {
+            amazed = new Amazed(map, solverName, forkAfter, period, cache, poolConfig);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
         long start = System.currentTimeMillis();
-        amazed.solve();
+        if (timeout > 0)
+            amazed.solve(timeout, TimeUnit.MILLISECONDS);
+        else
+            amazed.solve();
         long stop = System.currentTimeMillis();
         long elapsed = stop - start;
         System.out.println("Solving time: " + elapsed + " ms");
@@ -1,25 +1,55 @@
 package amazed.maze;
 
 import java.awt.EventQueue;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
 
 import amazed.solver.SequentialSolver;
 import amazed.solver.ForkJoinSolver;
+import amazed.solver.ParallelBfsSolver;
+import amazed.solver.BidirectionalSolver;
+import amazed.solver.AStarSolver;
+import amazed.solver.ParallelAStarSolver;
+import amazed.solver.JunctionSolver;
+import amazed.solver.PathQueries;
+import amazed.solver.ThreadSolver;
+import amazed.solver.Deadline;
+import amazed.solver.TimeBounded;
 
 /**
  * <code>Amazed</code> is a simple application class that applies a
  * solver to a maze.
  * <p>
  * This class supports sequential solvers of class
- * <code>SequentialSolver</code> and fork/join solvers of class
- * <code>ForkJoinSolver</code>. It runs both using the common pool of
- * <code>java.util.concurrent.ForkJoinPool</code>; thus, the solvers
- * must be a subtype of
- * <code>RecursiveTask&lt;List&lt;Integer&gt;&gt;</code>. After creating an
+ * <code>SequentialSolver</code>, fork/join solvers of class
+ * <code>ForkJoinSolver</code> (forking after a fixed number of steps
+ * with {@link #PARALLEL}, or adaptively with {@link #PARALLEL_AUTO}),
+ * breadth-first solvers of class
+ * <code>ParallelBfsSolver</code>, bidirectional solvers of class
+ * <code>BidirectionalSolver</code>, and A* solvers of classes
+ * <code>AStarSolver</code> and <code>ParallelAStarSolver</code>,
+ * junction-graph solvers of class <code>JunctionSolver</code>, and
+ * thread-per-branch solvers of class <code>ThreadSolver</code>,
+ * selected by the names {@link #SEQUENTIAL}, {@link #PARALLEL},
+ * {@link #BFS_PARALLEL}, {@link #BIDIRECTIONAL}, {@link #ASTAR},
+ * {@link #ASTAR_PARALLEL}, {@link #JUNCTION}, and {@link #THREADS}
+ * respectively. It runs all of them in a
+ * <code>java.util.concurrent.ForkJoinPool</code> of its own,
+ * configured by a {@link PoolConfig} and reused by every solve; thus,
+ * the solvers must be a subtype of
+ * <code>RecursiveTask&lt;Path&gt;</code>. The maze is loaded in the
+ * same pool, together with the graph and components that searches
+ * use. After creating an
  * instance from a map file, the solving process is started by calling
- * method <code>solve</code>. After <code>solve</code> terminates, the
+ * method <code>solve</code>, optionally with a timeout after which
+ * the search stops. After <code>solve</code> terminates, the
  * solution can be displayed by calling method
  * <code>showSolution</code>.
  *
@@ -28,9 +58,77 @@ import amazed.solver.ForkJoinSolver;
 
 public class Amazed
 {
+    /**
+     * Name of the sequential depth-first solver.
+     */
+    public static final String SEQUENTIAL = "sequential";
+    /**
+     * Name of the fork/join depth-first solver.
+     */
+    public static final String PARALLEL = "parallel";
+    /**
+     * Name of the fork/join depth-first solver that decides when to
+     * fork from the load of the pool.
+     */
+    public static final String PARALLEL_AUTO = "parallel-auto";
+    /**
+     * Name of the parallel breadth-first solver, which finds shortest
+     * paths.
+     */
+    public static final String BFS_PARALLEL = "bfs-parallel";
+    /**
+     * Name of the bidirectional solver, searching from the start node
+     * and from the goals at the same time.
+     */
+    public static final String BIDIRECTIONAL = "bidirectional";
+    /**
+     * Name of the sequential A* solver, which finds shortest paths.
+     */
+    public static final String ASTAR = "astar";
+    /**
+     * Name of the hash-distributed parallel A* solver, which finds
+     * shortest paths.
+     */
+    public static final String ASTAR_PARALLEL = "astar-parallel";
+    /**
+     * Name of the solver that searches the junction graph, with dead
+     * ends pruned and corridors contracted, for shortest paths.
+     */
+    public static final String JUNCTION = "junction";
+    /**
+     * Name of the depth-first solver that runs every branch of the
+     * search on a thread of its own, virtual if supported.
+     */
+    public static final String THREADS = "threads";
+
+    private static final List<String> SOLVERS =
+        Arrays.asList(SEQUENTIAL, PARALLEL, PARALLEL_AUTO, BFS_PARALLEL, BIDIRECTIONAL, ASTAR, ASTAR_PARALLEL,
+                      JUNCTION, THREADS);
+
+    /**
+     * Tests whether <code>name</code> is the name of a solver
+     * supported by this class.
+     *
+     * @param name   a candidate solver name
+     * @return       <code>true</code> if <code>name</code> can be passed to
+     *               {@link #Amazed(String, String, int, int)}
+     */
+    public static boolean isSolver(String name)
+    {
+        return SOLVERS.contains(name);
+    }
+
+    private final ForkJoinPool pool;
     private Maze maze;
-    private RecursiveTask<List<Integer>> solver;
-    private List<Integer> path;
+    private String solverName;
+    private int forkAfter;
+    // path found by the last search that ended, shown by showSolution
+    private volatile Path path;
+    // map cache and key of the map, or null
+    private MapCache cache;
+    private String cacheKey;
+    // queries on the maze, created by the first one
+    private volatile PathQueries queries;
 
     /**
      * Creates a maze reading from map file <code>map</code>.
@@ -55,7 +153,96 @@ public class Amazed
      */
     public Amazed(String map, boolean sequentialSolver, int forkAfter, int animationDelay)
     {
-        maze = new Maze(map);
+        this(map, sequentialSolver ? SEQUENTIAL : PARALLEL, forkAfter, animationDelay);
+    }
+
+    /**
+     * Creates a maze reading from map file <code>map</code>, to be
+     * searched with the solver called <code>solver</code>.
+     *
+     * @param map              the name of the map file describing the maze to be searched
+     * @param solver           the name of a solver, such as
+     *                         {@link #SEQUENTIAL} or {@link #PARALLEL}
+     * @param forkAfter        the number of steps (visited nodes) after
+     *                         which a parallel task is forked, used by
+     *                         solver {@link #PARALLEL} only
+     * @param animationDelay   milliseconds of pause between a step and
+     *                         the next one in the animation of the
+     *                         solution search, as in
+     *                         {@link #Amazed(String, boolean, int, int)}
+     * @throws IllegalArgumentException if <code>solver</code> is not
+     *                                  the name of a solver
+     */
+    public Amazed(String map, String solver, int forkAfter, int animationDelay)
+    {
+        this(map, solver, forkAfter, animationDelay, null);
+    }
+
+    /**
+     * Creates a maze reading from map file <code>map</code>, to be
+     * searched with the solver called <code>solver</code>, using the
+     * map cache in directory <code>cache</code>. If the cache holds the
+     * content of <code>map</code>, the maze is loaded from its binary
+     * form instead of parsing the map; if it also holds the outcome of
+     * the solver on the map, <code>solve</code> checks that outcome
+     * instead of searching. If the cache cannot be used, the maze is
+     * loaded and searched as without cache.
+     *
+     * @param map              the name of the map file describing the maze to be searched
+     * @param solver           the name of a solver
+     * @param forkAfter        the number of steps (visited nodes) after
+     *                         which a parallel task is forked, used by
+     *                         solver {@link #PARALLEL} only
+     * @param animationDelay   milliseconds of pause between a step and
+     *                         the next one in the animation of the
+     *                         solution search, as in
+     *                         {@link #Amazed(String, boolean, int, int)}
+     * @param cache            the directory of the map cache, created if
+     *                         needed; <code>null</code> for no cache
+     * @throws IllegalArgumentException if <code>solver</code> is not
+     *                                  the name of a solver
+     */
+    public Amazed(String map, String solver, int forkAfter, int animationDelay, String cache)
+    {
+        this(map, solver, forkAfter, animationDelay, cache, new PoolConfig());
+    }
+
+    /**
+     * Creates a maze reading from map file <code>map</code>, to be
+     * searched with the solver called <code>solver</code> in a pool
+     * configured by <code>poolConfig</code>.
+     *
+     * @param map              the name of the map file describing the maze to be searched
+     * @param solver           the name of a solver
+     * @param forkAfter        the number of steps (visited nodes) after
+     *                         which a parallel task is forked, used by
+     *                         solver {@link #PARALLEL} only
+     * @param animationDelay   milliseconds of pause between a step and
+     *                         the next one in the animation of the
+     *                         solution search, as in
+     *                         {@link #Amazed(String, boolean, int, int)}
+     * @param cache            the directory of the map cache, as in
+     *                         {@link #Amazed(String, String, int, int, String)};
+     *                         <code>null</code> for no cache
+     * @param poolConfig       the configuration of the pool that loads
+     *                         and solves the maze
+     * @throws IllegalArgumentException if <code>solver</code> is not
+     *                                  the name of a solver
+     */
+    public Amazed(String map, String solver, int forkAfter, int animationDelay,
+                  String cache, PoolConfig poolConfig)
+    {
+        if (!isSolver(solver))
+            throw new IllegalArgumentException("Unknown solver " + solver);
+        this.solverName = solver;
+        this.forkAfter = forkAfter;
+        pool = poolConfig.newPool();
+        try {
+            load(map, cache == null ? null : openCache(cache));
+        } catch (IOException e) {
+            System.err.println("Error: cannot open map file " + map);
+            System.exit(1);
+        }
         if (animationDelay >= 0) {
             EventQueue.invokeLater(new Runnable() {
                 @Override
@@ -66,27 +253,344 @@ public class Amazed
             });
         }
         maze.setDelay(animationDelay);
-        if (sequentialSolver)
-            solver = new SequentialSolver(maze);
-        else
-            solver = new ForkJoinSolver(maze, forkAfter);
+    }
+
+    /**
+     * Creates a maze reading from map file <code>map</code>, to be
+     * searched without animation nor display with the solver called
+     * <code>solver</code> in pool <code>pool</code>, shared with other
+     * objects: <code>shutdown</code> must not be called on the new
+     * object. Creating the object in a task of <code>pool</code> loads
+     * the maze in that task.
+     *
+     * @param map         the name of the map file describing the maze to be searched
+     * @param solver      the name of a solver
+     * @param forkAfter   the number of steps (visited nodes) after
+     *                    which a parallel task is forked, used by
+     *                    solver {@link #PARALLEL} only
+     * @param cache       the map cache, as opened by
+     *                    {@link #openCache(String)}; <code>null</code>
+     *                    for no cache
+     * @param pool        the pool that loads and solves the maze
+     * @throws IOException if the map file cannot be read
+     * @throws IllegalArgumentException if <code>solver</code> is not
+     *                                  the name of a solver
+     */
+    Amazed(String map, String solver, int forkAfter, MapCache cache, ForkJoinPool pool)
+    throws IOException
+    {
+        if (!isSolver(solver))
+            throw new IllegalArgumentException("Unknown solver " + solver);
+        this.solverName = solver;
+        this.forkAfter = forkAfter;
+        this.pool = pool;
+        load(map, cache);
+        maze.setDelay(-1);
+    }
+
+    /**
+     * Opens the map cache in directory <code>directory</code>, with
+     * the default bound on its size.
+     *
+     * @param directory   the directory of the cache, created if needed
+     * @return            the cache, or <code>null</code> after printing
+     *                    a warning if it cannot be opened
+     */
+    static MapCache openCache(String directory)
+    {
+        try {
+            return new MapCache(directory, MapCache.DEFAULT_BYTES);
+        } catch (IOException e) {
+            System.err.println("Warning: map cache not used: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // load the maze from map file `map', through `cache' unless null
+    private void load(String map, MapCache cache)
+    throws IOException
+    {
+        // errors reading the map itself are not the cache's: they propagate
+        String key = cache == null ? null : MapCache.key(map);
+        maze = inPool(() -> prepare(new Board(readTiles(map, cache, key))));
+        this.cache = cache;
+        cacheKey = key;
+    }
+
+    // the tiles of map file `map', with key `key', through `cache' unless null
+    private static TileStore readTiles(String map, MapCache cache, String key)
+    throws IOException
+    {
+        // binary maps are mapped in place without a cache
+        if (cache == null || BinaryMap.isBinary(map))
+            return Board.read(map);
+        TileStore tiles = null;
+        try {
+            tiles = cache.tiles(key);
+        } catch (IOException e) {
+            System.err.println("Warning: map cache not used: " + e.getMessage());
+        }
+        if (tiles == null) {
+            tiles = Board.read(map);
+            try {
+                cache.putTiles(key, tiles);
+            } catch (IOException e) {
+                System.err.println("Warning: map cache not updated: " + e.getMessage());
+            }
+        }
+        return tiles;
+    }
+
+    // the maze of `board', with the structures its searches use built,
+    // so that deadlines only bound searches
+    private Maze prepare(Board board)
+    {
+        Maze maze = new Maze(board);
+        maze.components();                  // builds the graph too
+        if (solverName.equals(JUNCTION))
+            maze.junctionGraph();
+        return maze;
+    }
+
+    // the maze built by `loader' in a task of the pool
+    private Maze inPool(Callable<Maze> loader)
+    throws IOException
+    {
+        try {
+            return pool.submit(loader).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while loading the maze");
+        } catch (ExecutionException e) {
+            // the pool wraps checked exceptions of callables, and may
+            // wrap exceptions again when they cross threads
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException)
+                    throw (IOException) cause;
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw (RuntimeException) cause;
+        }
+    }
+
+    // a fresh solver, so that every search starts from a clean state;
+    // all solvers are also TimeBounded
+    private RecursiveTask<Path> newSolver()
+    {
+        switch (solverName) {
+        case SEQUENTIAL:
+            return new SequentialSolver(maze);
+        case PARALLEL_AUTO:
+            return new ForkJoinSolver(maze, true);
+        case BFS_PARALLEL:
+            return new ParallelBfsSolver(maze);
+        case BIDIRECTIONAL:
+            return new BidirectionalSolver(maze);
+        case ASTAR:
+            return new AStarSolver(maze);
+        case ASTAR_PARALLEL:
+            return new ParallelAStarSolver(maze);
+        case JUNCTION:
+            return new JunctionSolver(maze);
+        case THREADS:
+            return new ThreadSolver(maze, forkAfter > 0 ? forkAfter : ThreadSolver.FORK_AFTER);
+        default:
+            return new ForkJoinSolver(maze, forkAfter);
+        }
     }
 
     /**
      * Runs the solver on the maze, waits for termination, and prints
-     * to screen the outcome of the search.
+     * to screen the outcome of the search. Every call runs a new
+     * search, independent of any previous or concurrent one. If no
+     * goal is reachable from the start node, the solver is not run at
+     * all; nor is it if the map cache holds a valid outcome of the
+     * solver on the map.
+     *
+     * @return   the outcome of the search
      */
-    public void solve()
+    public SolveResult solve()
     {
-        ForkJoinPool pool = ForkJoinPool.commonPool();
-        path = pool.invoke(solver);
-        if (path != null && maze.isValidPath(path))
+        return solve(Deadline.NONE);
+    }
+
+    /**
+     * Runs the solver on the maze as {@link #solve()} does, but stops
+     * the search if it has not ended within <code>timeout</code>. A
+     * search that stops returns a result with status
+     * {@link SolveResult.Status#TIMED_OUT}, no path, and the number of
+     * nodes explored until then; its outcome is not cached. Searches
+     * stop at their next step, so that <code>solve</code> may return
+     * somewhat after the timeout. The timeout does not include building
+     * the structures that the maze shares among all solves, such as its
+     * graph: they are built when the maze is loaded.
+     *
+     * @param timeout   the maximum duration of the search
+     * @param unit      the unit of <code>timeout</code>
+     * @return          the outcome of the search
+     */
+    public SolveResult solve(long timeout, TimeUnit unit)
+    {
+        return solve(Deadline.after(timeout, unit));
+    }
+
+    private SolveResult solve(Deadline deadline)
+    {
+        SolveResult result;
+        try {
+            result = search(deadline, System.nanoTime());
+        } finally {
+            deadline.release();
+        }
+        switch (result.status()) {
+        case FOUND:
             System.out.println("Goal found :-D");
-        else
+            break;
+        case NOT_FOUND:
             System.out.println("Search completed: no goal found :-(");
+            break;
+        default:
+            System.out.println("Search timed out after exploring " + result.explored() + " nodes :-|");
+        }
+        return result;
+    }
+
+    // the outcome of the cache or of a new search, started at `start';
+    // concurrent searches share nothing but the path shown
+    SolveResult search(Deadline deadline, long start)
+    {
+        Path cached = cachedPath();
+        if (cached != null) {
+            Path found = cached.length() == 0 ? null : cached;
+            path = found;
+            return new SolveResult(found == null ? SolveResult.Status.NOT_FOUND : SolveResult.Status.FOUND,
+                                   found, 0, System.nanoTime() - start, true);
+        }
+        // no search can succeed outside the components with a goal
+        boolean reachable = pool.submit(maze::isGoalReachable).join();
+        int explored = 0;
+        Path found = null;
+        if (reachable) {
+            RecursiveTask<Path> solver = newSolver();
+            TimeBounded bounded = (TimeBounded) solver;
+            bounded.setDeadline(deadline);
+            found = pool.invoke(solver);
+            explored = bounded.explored();
+            if (bounded.isTimedOut())
+                return new SolveResult(SolveResult.Status.TIMED_OUT, null, explored,
+                                       System.nanoTime() - start, false);
+        }
+        long elapsed = System.nanoTime() - start;
+        // an invalid path is a solver bug: report no path, but cache nothing
+        if (found == null || maze.isValidPath(found))
+            cachePath(found);
+        else
+            found = null;
+        path = found;
+        if (found != null)
+            return new SolveResult(SolveResult.Status.FOUND, found, explored, elapsed, false);
+        return new SolveResult(SolveResult.Status.NOT_FOUND, null, explored, elapsed, false);
+    }
+
+    /**
+     * Returns a shortest path from the start cell of
+     * <code>query</code> to one of its goal cells, which need not be
+     * the start node and goals of the maze. The query runs in the pool
+     * of this object, and does not change the outcome of
+     * <code>solve</code> nor the solution shown.
+     *
+     * @param query   a query on the maze
+     * @return        the path found, or <code>null</code> if no goal
+     *                cell of <code>query</code> can be reached
+     * @throws IllegalArgumentException if a cell of <code>query</code>
+     *                                  is outside the maze
+     * @see PathQueries#solve(PathQueries.Query)
+     */
+    public Path query(PathQueries.Query query)
+    {
+        PathQueries queries = queries();
+        return pool.submit(() -> queries.solve(query)).join();
+    }
+
+    /**
+     * Answers all queries of <code>queries</code> in parallel in the
+     * pool of this object, as {@link #query(PathQueries.Query)} does
+     * for one query.
+     *
+     * @param queries   queries on the maze
+     * @return          the paths found and the throughput of the
+     *                  queries
+     * @throws IllegalArgumentException if a cell of a query is outside
+     *                                  the maze
+     */
+    public PathQueries.Results queryAll(PathQueries.Query[] queries)
+    {
+        PathQueries pathQueries = queries();
+        return pool.submit(() -> pathQueries.solveAll(queries)).join();
+    }
+
+    // the queries on the maze, created in the pool on first use
+    private PathQueries queries()
+    {
+        PathQueries queries = this.queries;
+        if (queries == null) {
+            synchronized (this) {
+                queries = this.queries;
+                if (queries == null)
+                    this.queries = queries = pool.submit(() -> new PathQueries(maze)).join();
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Shuts down the pool of this object; later calls to
+     * <code>solve</code> fail. Workers are daemon threads, so that
+     * clients that only exit need not call this method.
+     */
+    public void shutdown()
+    {
         pool.shutdown();
     }
 
+    // the outcome of the solver cached for the map, if valid, or null
+    private Path cachedPath()
+    {
+        if (cache == null)
+            return null;
+        try {
+            Path cached = cache.path(cacheKey, cacheName(), maze);
+            if (cached == null)
+                return null;
+            // an empty path is only as good as the components agree
+            if (cached.length() == 0 ? !pool.submit(maze::isGoalReachable).join() : maze.isValidPath(cached))
+                return cached;
+        } catch (IOException e) {
+            System.err.println("Warning: map cache not used: " + e.getMessage());
+        }
+        return null;
+    }
+
+    // store `found', a valid path or null if no goal is reachable
+    private void cachePath(Path found)
+    {
+        if (cache == null)
+            return;
+        try {
+            cache.putPath(cacheKey, cacheName(), maze, found);
+        } catch (IOException e) {
+            System.err.println("Warning: map cache not updated: " + e.getMessage());
+        }
+    }
+
+    // name of the solver in the cache, including its parameter
+    private String cacheName()
+    {
+        return solverName.equals(PARALLEL) ? PARALLEL + "-" + forkAfter : solverName;
+    }
+
     /**
      * Displays the solution by removing all players and marking a
      * path from the start node to a goal on the maze graphical
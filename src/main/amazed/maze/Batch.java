@@ -0,0 +1,289 @@
+package amazed.maze;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import amazed.solver.Deadline;
+
+/**
+ * <code>Batch</code> solves many maps in one virtual machine, so that
+ * startup, class loading, and compilation are paid once rather than
+ * once per map.
+ * <p>
+ * Every map is loaded and solved by a task of one shared fork/join
+ * pool, with the same solver, as an {@link Amazed} object sharing the
+ * pool would, but without animation nor display. Maps are submitted in
+ * order, but at most <code>inFlight</code> of them are loaded or
+ * solved at any time, which bounds the memory held by mazes; the tasks
+ * of different maps run concurrently, and their parallel subtasks, if
+ * any, share the workers of the pool. Sequential solvers thus keep all
+ * workers busy once there are as many maps in flight as workers.
+ * <p>
+ * For every map, <code>run</code> prints one line as soon as the map
+ * is done, in order of completion, with these comma-separated fields:
+ * <ul>
+ * <li><code>map</code>: the map file;</li>
+ * <li><code>status</code>: <code>found</code>, <code>not-found</code>,
+ * <code>timed-out</code>, or <code>error</code> if the map could not
+ * be loaded or solved;</li>
+ * <li><code>path_length</code>: the number of nodes of the path found,
+ * empty if none;</li>
+ * <li><code>explored</code>: the number of nodes explored by the
+ * solver;</li>
+ * <li><code>cached</code>: <code>true</code> if the outcome was read
+ * from the map cache;</li>
+ * <li><code>load_ms</code> and <code>solve_ms</code>: the time taken to
+ * load and to solve the map.</li>
+ * </ul>
+ */
+
+public final class Batch
+{
+    /**
+     * Header of the lines printed by <code>run</code>.
+     */
+    public static final String HEADER = "map,status,path_length,explored,cached,load_ms,solve_ms";
+
+    private final String solver;
+    private final int forkAfter;
+    private int inFlight = -1;
+    private long timeout = 0;
+    private String cache = null;
+
+    /**
+     * Creates a batch that solves maps with the solver called
+     * <code>solver</code>.
+     *
+     * @param solver      the name of a solver, as in
+     *                    {@link Amazed#isSolver(String)}
+     * @param forkAfter   the number of steps (visited nodes) after
+     *                    which a parallel task is forked, used by
+     *                    solvers {@link Amazed#PARALLEL} and
+     *                    {@link Amazed#THREADS} only
+     * @throws IllegalArgumentException if <code>solver</code> is not
+     *                                  the name of a solver
+     */
+    public Batch(String solver, int forkAfter)
+    {
+        if (!Amazed.isSolver(solver))
+            throw new IllegalArgumentException("Unknown solver " + solver);
+        this.solver = solver;
+        this.forkAfter = forkAfter;
+    }
+
+    /**
+     * Sets the maximum number of maps loaded or solved at the same
+     * time (default: twice the parallelism of the pool).
+     *
+     * @param inFlight   the maximum, at least 1
+     * @return           this batch
+     */
+    public Batch inFlight(int inFlight)
+    {
+        if (inFlight < 1)
+            throw new IllegalArgumentException("maps in flight must be positive");
+        this.inFlight = inFlight;
+        return this;
+    }
+
+    /**
+     * Sets a timeout on the solve of every map (default: none).
+     *
+     * @param timeout   the maximum duration of every search; if
+     *                  <code>timeout &lt;= 0</code> searches are not
+     *                  bounded
+     * @param unit      the unit of <code>timeout</code>
+     * @return          this batch
+     */
+    public Batch timeout(long timeout, TimeUnit unit)
+    {
+        this.timeout = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Sets the directory of the map cache shared by all maps (default:
+     * no cache).
+     *
+     * @param cache   the directory of the map cache, created if needed;
+     *                <code>null</code> for no cache
+     * @return        this batch
+     */
+    public Batch cache(String cache)
+    {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Loads and solves every map of <code>maps</code> in
+     * <code>pool</code>, printing a line to <code>out</code> for every
+     * map when it is done, after a first line {@link #HEADER}. Returns
+     * when all maps are done.
+     *
+     * @param maps   the map files to solve, read one at a time as
+     *               maps are submitted
+     * @param pool   the pool that loads and solves all maps
+     * @param out    the stream receiving the result lines
+     * @return       the totals of the batch
+     */
+    public Report run(Iterable<String> maps, ForkJoinPool pool, PrintStream out)
+    {
+        MapCache mapCache = cache == null ? null : Amazed.openCache(cache);
+        int nSlots = inFlight == -1 ? 2 * pool.getParallelism() : inFlight;
+        Semaphore slots = new Semaphore(nSlots);
+        Report report = new Report();
+        synchronized (out) {
+            out.println(HEADER);
+        }
+        long start = System.nanoTime();
+        for (String map: maps) {
+            slots.acquireUninterruptibly();
+            pool.execute(new Solve(map, mapCache, pool, slots, report, out));
+        }
+        // all maps are done once every slot is free again
+        slots.acquireUninterruptibly(nSlots);
+        slots.release(nSlots);
+        report.elapsed = System.nanoTime() - start;
+        return report;
+    }
+
+    /**
+     * <code>Report</code> counts the outcomes of a batch.
+     */
+    public static final class Report
+    {
+        private final AtomicInteger found = new AtomicInteger();
+        private final AtomicInteger notFound = new AtomicInteger();
+        private final AtomicInteger timedOut = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private long elapsed;
+
+        private Report()
+        {
+        }
+
+        /**
+         * Returns the number of maps done.
+         *
+         * @return   the number of maps whose line has been printed
+         */
+        public int maps()
+        {
+            return found.get() + notFound.get() + timedOut.get() + failed.get();
+        }
+
+        /**
+         * Returns the number of maps that could not be loaded or
+         * solved.
+         *
+         * @return   the number of maps with status <code>error</code>
+         */
+        public int failed()
+        {
+            return failed.get();
+        }
+
+        /**
+         * Returns the throughput of the batch.
+         *
+         * @return   the number of maps done per second of the batch
+         */
+        public double mapsPerSecond()
+        {
+            return elapsed == 0 ? 0 : maps() / (elapsed / 1e9);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%d maps: %d found, %d not found, %d timed out, %d failed in %.1f s (%.1f maps/s)",
+                                 maps(), found.get(), notFound.get(), timedOut.get(), failed.get(),
+                                 elapsed / 1e9, mapsPerSecond());
+        }
+    }
+
+    /**
+     * Loads and solves one map, then frees its slot.
+     */
+    private class Solve
+        extends RecursiveAction
+    {
+        private final String map;
+        private final MapCache mapCache;
+        private final ForkJoinPool pool;
+        private final Semaphore slots;
+        private final Report report;
+        private final PrintStream out;
+
+        Solve(String map, MapCache mapCache, ForkJoinPool pool, Semaphore slots, Report report, PrintStream out)
+        {
+            this.map = map;
+            this.mapCache = mapCache;
+            this.pool = pool;
+            this.slots = slots;
+            this.report = report;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute()
+        {
+            long start = System.nanoTime();
+            String line;
+            try {
+                Amazed amazed = new Amazed(map, solver, forkAfter, mapCache, pool);
+                long loaded = System.nanoTime();
+                Deadline deadline = timeout > 0 ? Deadline.after(timeout, TimeUnit.NANOSECONDS) : Deadline.NONE;
+                SolveResult result;
+                try {
+                    result = amazed.search(deadline, loaded);
+                } finally {
+                    deadline.release();
+                }
+                line = map + "," + count(result.status()) + ","
+                    + (result.path() == null ? "" : result.path().length()) + ","
+                    + result.explored() + "," + result.isCached() + ","
+                    + millis(loaded - start) + "," + millis(result.elapsed(TimeUnit.NANOSECONDS));
+            } catch (IOException | RuntimeException | StackOverflowError e) {
+                report.failed.incrementAndGet();
+                System.err.println("Error: " + map + ": " + e);
+                line = map + ",error,,,," + millis(System.nanoTime() - start) + ",";
+            }
+            try {
+                synchronized (out) {
+                    out.println(line);
+                }
+            } finally {
+                slots.release();
+            }
+        }
+
+        // count `status' in the report, and return its name
+        private String count(SolveResult.Status status)
+        {
+            switch (status) {
+            case FOUND:
+                report.found.incrementAndGet();
+                return "found";
+            case NOT_FOUND:
+                report.notFound.incrementAndGet();
+                return "not-found";
+            default:
+                report.timedOut.incrementAndGet();
+                return "timed-out";
+            }
+        }
+    }
+
+    private static String millis(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,250 @@
+package amazed.maze;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <code>BinaryMap</code> is a map in compact binary form, memory
+ * mapped from its file and used in place as the tile store of a
+ * board.
+ * <p>
+ * A binary map file contains, in big-endian order:
+ * <ul>
+ * <li>a header of six <code>int</code>s: the magic number
+ * <code>AMZB</code>, the format version, flags, the number of rows,
+ * the number of columns, and the number of goals;</li>
+ * <li>the tile plane: two bits per cell, four cells per byte, with
+ * cell <code>i</code> in bits <code>2 * (i % 4)</code> of byte
+ * <code>i / 4</code>; codes 0 to 3 stand for <code>EMPTY</code>,
+ * <code>SOLID</code>, <code>BRICK</code> and <code>HEART</code>;</li>
+ * <li>if flag <code>GOALS</code> is set, the indices of all goal cells
+ * in increasing order, one <code>int</code> each;</li>
+ * <li>if flag <code>WALLS</code> is set, the wall mask: one bit per
+ * cell, set if the cell is not accessible, with cell <code>i</code> in
+ * bit <code>i % 64</code> of <code>long</code> <code>i / 64</code>.</li>
+ * </ul>
+ * The goal list and the wall mask start at offsets that are multiples
+ * of 8. Opening a binary map checks its header and size, and that the
+ * goal list holds increasing indices of accessible <code>HEART</code>
+ * cells; it does not read the rest of the map, so it takes the same
+ * time whatever the size of the map.
+ */
+
+final class BinaryMap
+    implements TileStore
+{
+    private static final int MAGIC = 0x414d5a42;   // "AMZB"
+    private static final int VERSION = 1;
+    static final int GOALS = 1;
+    static final int WALLS = 2;
+    private static final int HEADER_BYTES = 24;
+
+    // tile code --> tile
+    private static final Tile[] TILES = { Tile.EMPTY, Tile.SOLID, Tile.BRICK, Tile.HEART };
+
+    private final ByteBuffer buffer;
+    private final int flags;
+    private final int nRows;
+    private final int nCols;
+    private final int nGoals;
+    private final int goalsOffset;
+    private final int wallsOffset;
+
+    private BinaryMap(ByteBuffer buffer, String filename)
+    throws IOException
+    {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+            throw new IOException(filename + " is not a binary map");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException(filename + " has unsupported binary map version " + buffer.getInt(4));
+        flags = buffer.getInt(8);
+        nRows = buffer.getInt(12);
+        nCols = buffer.getInt(16);
+        nGoals = buffer.getInt(20);
+        long size = (long) nRows * nCols;
+        long goals = align(HEADER_BYTES + (size + 3) / 4);
+        long walls = align(goals + ((flags & GOALS) != 0 ? 4L * nGoals : 0));
+        long end = walls + ((flags & WALLS) != 0 ? 8 * ((size + 63) / 64) : 0);
+        if (nRows < 0 || nCols < 0 || size > Integer.MAX_VALUE || nGoals < 0 || end != buffer.capacity())
+            throw new IOException(filename + " is a corrupted binary map");
+        if (size == 0)
+            throw new IOException(filename + " has no cells");
+        goalsOffset = (int) goals;
+        wallsOffset = (int) walls;
+        if ((flags & GOALS) != 0)
+            checkGoals((int) size, filename);
+    }
+
+    // throw if the goal list is not increasing, or lists a cell that is
+    // not an accessible heart in a map of `size' cells
+    private void checkGoals(int size, String filename)
+    throws IOException
+    {
+        for (int i = 0, previous = -1; i < nGoals; i++) {
+            int goal = buffer.getInt(goalsOffset + 4 * i);
+            if (goal < 0 || goal >= size)
+                throw new IOException(filename + " has a corrupted goal list: goal " + goal
+                                      + " is outside the map");
+            if (goal <= previous)
+                throw new IOException(filename + " has a corrupted goal list: goal " + goal
+                                      + " is out of order");
+            if (tile(goal) != Tile.HEART || !isAccessible(goal))
+                throw new IOException(filename + " has a corrupted goal list: goal " + goal
+                                      + " is not an accessible heart");
+            previous = goal;
+        }
+    }
+
+    private static long align(long offset)
+    {
+        return (offset + 7) & ~7L;
+    }
+
+    // is the file filename a binary map, judging by its magic number?
+    static boolean isBinary(String filename)
+    throws IOException
+    {
+        try (InputStream in = Files.newInputStream(Paths.get(filename))) {
+            byte[] magic = new byte[4];
+            return in.readNBytes(magic, 0, 4) == 4 && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    // map the binary map file filename in memory; IOException if it is
+    // corrupted or has no cells
+    static BinaryMap open(String filename)
+    throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(filename + " is too large to map");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BinaryMap(buffer, filename);
+        }
+    }
+
+    // write the tiles of store to filename, with the optional sections in flags
+    static void write(TileStore store, int flags, String filename)
+    throws IOException
+    {
+        int size = store.rows() * store.cols();
+        int[] goals = null;
+        if ((flags & GOALS) != 0) {
+            goals = store.goals();
+            if (goals == null)
+                goals = findGoals(store);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                 Files.newOutputStream(Paths.get(filename)), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(flags);
+            out.writeInt(store.rows());
+            out.writeInt(store.cols());
+            out.writeInt(goals == null ? 0 : goals.length);
+            for (int index = 0; index < size; index += 4) {
+                int packed = 0;
+                for (int i = index; i < Math.min(index + 4, size); i++)
+                    packed |= code(store.tile(i)) << (2 * (i - index));
+                out.writeByte(packed);
+            }
+            pad(out);
+            if (goals != null) {
+                for (int goal: goals)
+                    out.writeInt(goal);
+                pad(out);
+            }
+            if ((flags & WALLS) != 0) {
+                for (int index = 0; index < size; index += 64) {
+                    long walls = 0;
+                    for (int i = index; i < Math.min(index + 64, size); i++)
+                        if (!store.isAccessible(i))
+                            walls |= 1L << (i - index);
+                    out.writeLong(walls);
+                }
+            }
+        }
+    }
+
+    private static int[] findGoals(TileStore store)
+    {
+        int size = store.rows() * store.cols(), count = 0;
+        for (int index = 0; index < size; index++)
+            if (store.tile(index) == Tile.HEART)
+                count++;
+        int[] goals = new int[count];
+        for (int index = 0, i = 0; i < count; index++)
+            if (store.tile(index) == Tile.HEART)
+                goals[i++] = index;
+        return goals;
+    }
+
+    private static int code(Tile tile)
+    {
+        for (int code = 0; code < TILES.length; code++)
+            if (TILES[code] == tile)
+                return code;
+        throw new IllegalArgumentException("tile " + tile + " cannot be stored in a binary map");
+    }
+
+    private static void pad(DataOutputStream out)
+    throws IOException
+    {
+        while (out.size() % 8 != 0)
+            out.writeByte(0);
+    }
+
+    @Override
+    public int rows()
+    {
+        return nRows;
+    }
+
+    @Override
+    public int cols()
+    {
+        return nCols;
+    }
+
+    @Override
+    public Tile tile(int index)
+    {
+        int packed = buffer.get(HEADER_BYTES + (index >>> 2));
+        return TILES[(packed >>> (2 * (index & 3))) & 3];
+    }
+
+    @Override
+    public boolean isAccessible(int index)
+    {
+        if ((flags & WALLS) == 0)
+            return tile(index).isAccessible();
+        long walls = buffer.getLong(wallsOffset + 8 * (index >>> 6));
+        return (walls & (1L << index)) == 0;
+    }
+
+    @Override
+    public int[] goals()
+    {
+        if ((flags & GOALS) == 0)
+            return null;
+        int[] goals = new int[nGoals];
+        for (int i = 0; i < nGoals; i++)
+            goals[i] = buffer.getInt(goalsOffset + 4 * i);
+        return goals;
+    }
+
+    @Override
+    public boolean isOffHeap()
+    {
+        return true;
+    }
+}
@@ -1,25 +1,29 @@
 package amazed.maze;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.List;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.io.*;
 
 
 public class Board
 {
+    // boards with at least this many cells keep their tiles off the heap
+    static final int OFF_HEAP_CELLS = 1 << 24;
 
-    // after creation, read-only access (except for operation markPath)
-    private Cell[][] board;
-    private int nRows;
-    private int nCols;
+    // tiles as loaded from the map; read-only
+    private final TileStore tiles;
+    // are tiles off the heap, and adjacency implicit in the graph?
+    private final boolean offHeap;
+    // ids of the nodes; read-only
+    private final NodeIds ids;
+    private final int nRows;
+    private final int nCols;
+
+    // cells materialized so far, by the graphical representation,
+    // players, or operation mark
+    // row*nCols + col --> cell at row, col
+    private final Map<Integer, Cell> cells = new ConcurrentHashMap<>();
 
     // players currently on the board
     // player identifier --> player object
@@ -27,60 +31,139 @@ public class Board
     // count of number of registered players, to ensure unique player ids
     private final AtomicInteger nPlayers = new AtomicInteger();
 
-    // unique node id --> coordinate position of node on board
-    // after creation, read-only access
-    private Map<Integer, Position> idToCell;
+    // board from map `filename', in text or binary format, with
+    // random node ids
+    Board(String filename)
+    {
+        this(filename, false);
+    }
+
+    // board from map `filename', with node ids row*nCols + col if
+    // `denseIds', and random ones otherwise
+    Board(String filename, boolean denseIds)
+    {
+        this(readMap(filename), denseIds);
+    }
+
+    // board on the tiles of `tiles', which must not change afterwards
+    Board(TileStore tiles)
+    {
+        this(tiles, false);
+    }
+
+    Board(TileStore tiles, boolean denseIds)
+    {
+        this(tiles, denseIds, (long) tiles.rows()*tiles.cols() >= OFF_HEAP_CELLS);
+    }
 
-    // empty board
-    Board(int nRows, int nCols)
+    // board on the tiles of `tiles', copied off the heap if `offHeap'
+    // and they are not already there
+    Board(TileStore tiles, boolean denseIds, boolean offHeap)
     {
-        board = new Cell[nRows][nCols];
-        this.nRows = nRows;
-        this.nCols = nCols;
+        this.tiles = offHeap && !tiles.isOffHeap() ? OffHeapTiles.copyOf(tiles) : tiles;
+        this.offHeap = offHeap;
+        nRows = tiles.rows();
+        nCols = tiles.cols();
+        ids = denseIds ? NodeIds.dense(nRows*nCols) : NodeIds.random(nRows*nCols);
         players = new ConcurrentHashMap<>();
-        idToCell = new HashMap<>();
     }
 
-    // board from map `filename'
-    Board(String filename)
+    // board with the same tiles and ids as `original', and no cells;
+    // its tiles copied off the heap if `offHeap' and they are not
+    // already there
+    Board(Board original, boolean offHeap)
+    {
+        tiles = offHeap && !original.tiles.isOffHeap() ? OffHeapTiles.copyOf(original.tiles) : original.tiles;
+        this.offHeap = offHeap;
+        ids = original.ids;
+        nRows = original.nRows;
+        nCols = original.nCols;
+        players = new ConcurrentHashMap<>();
+    }
+
+    private static TileStore readMap(String mapFile)
     {
         try {
-            readMap(filename);
+            return read(mapFile);
         } catch (IOException e) {
-            System.err.println("Error: cannot open map file " + filename);
+            System.err.println("Error: cannot open map file " + mapFile);
             System.exit(1);
+            return null;
         }
-        players = new ConcurrentHashMap<>();
+    }
+
+    // tiles of map `mapFile', in text or binary format
+    static TileStore read(String mapFile)
+    throws IOException
+    {
+        if (BinaryMap.isBinary(mapFile))
+            return BinaryMap.open(mapFile);
+        return MapParser.parse(mapFile);
+    }
+
+    TileStore getTiles()
+    {
+        return tiles;
+    }
+
+    boolean isOffHeap()
+    {
+        return offHeap;
+    }
+
+    NodeIds getIds()
+    {
+        return ids;
+    }
+
+    // id of the node at row*nCols + col
+    int getId(int index)
+    {
+        return ids.id(index);
+    }
+
+    // is the id of every node row*nCols + col?
+    boolean hasDenseIds()
+    {
+        return ids.isDense();
     }
 
     Cell getCell(int row, int col)
     {
-        return board[row][col];
+        return cells.computeIfAbsent(row*nCols + col, this::newCell);
+    }
+
+    private Cell newCell(int index)
+    {
+        return new Cell(tiles.tile(index), ids.id(index));
     }
 
     Cell getCell(Position position)
     {
-        return board[position.getRow()][position.getCol()];
+        return getCell(position.getRow(), position.getCol());
     }
 
     Cell getCell(int id)
     {
-        return getCell(idToCell.get(id));
+        return getCell(getPosition(id));
     }
 
     Position getPosition(int id)
     {
-        return idToCell.get(id);
+        int index = ids.index(id);
+        if (index == -1)
+            return null;
+        return new Position(index / nCols, index % nCols);
     }
 
     int getWidth()
     {
-        return nCols * board[0][0].getWidth();
+        return nCols * getCell(0, 0).getWidth();
     }
 
     int getHeight()
     {
-        return nRows * board[0][0].getHeight();
+        return nRows * getCell(0, 0).getHeight();
     }
 
     int getRows()
@@ -93,98 +176,20 @@ public class Board
         return nCols;
     }
 
-    List<Position> pathToPositions(List<Integer> path)
-    {
-        List<Position> positionPath = new ArrayList<>(path.size());
-        for (int id: path)
-            positionPath.add(getPosition(id));
-        return positionPath;
-    }
-
-    // thread unsafe
-    void markPath(List<Integer> path)
+    // mark the cell at row, col as part of a path; thread unsafe
+    void mark(int row, int col)
     {
-        List<Position> positionPath = pathToPositions(path);
-        for (Position position: positionPath) {
-            int row = position.getRow(), col = position.getCol();
-            board[row][col] = getCell(position).marked();
-        }
-    }
-
-    private void readMap(String mapFile)
-    throws FileNotFoundException, IOException
-    {
-        Cell cell;
-        int row = 0, col = 0, nId = 0;
-        List<Integer> ids = null;
-        try (BufferedReader br = new BufferedReader(new FileReader(mapFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                // remove whitespaces
-                line = line.replaceAll("\\s", "");
-                StringReader lineReader = new StringReader(line);
-                int ch, id = 0;
-                line_loop:
-                while ((ch = lineReader.read()) != -1) {
-                    switch (ch) {
-                    case '@':
-                        break line_loop;
-                    case '$':
-                        Pattern p = Pattern.compile("^\\$(\\d+),(\\d+)$");
-                        Matcher m = p.matcher(line);
-                        if (m.find()) {
-                            nRows = Integer.parseInt(m.group(1));
-                            nCols = Integer.parseInt(m.group(2));
-                            board = new Cell[nRows][nCols];
-                            int numCells = nRows*nCols;
-                            ids = new ArrayList<>(2*numCells);
-                            for (int i = -numCells; i < numCells; i++)
-                                ids.add(i);
-                            Collections.shuffle(ids);
-                            idToCell = new HashMap<>(numCells);
-                        }
-                        break line_loop;
-                    default:
-                        if (row < nRows && col < nCols)
-                            id = ids.get(nId++);
-                        if (ch == Tile.EMPTY.getChar())
-                            cell = new Cell(Tile.EMPTY, id);
-                        else if (ch == Tile.SOLID.getChar())
-                            cell = new Cell(Tile.SOLID, id);
-                        else if (ch == Tile.BRICK.getChar())
-                            cell = new Cell(Tile.BRICK, id);
-                        else if (ch == Tile.HEART.getChar())
-                            cell = new Cell(Tile.HEART, id);
-                        else {
-                            System.out.println("Unrecognized symbol " +
-                                               Character.toString((char) ch) + " on " +
-                                               "row " + row + " column " + col);
-                            System.out.println("... using empty cell instead.");
-                            cell = new Cell(Tile.EMPTY, id);
-                        }
-                    }
-                    // Ignore rows and columns beyond the declared ones
-                    if (row < nRows && col < nCols) {
-                        board[row][col] = cell;
-                        idToCell.put(id, new Position(row, col));
-                        col += 1;
-                    }
-                }
-                if (nCols > 0 && col == nCols) {
-                    row += 1;
-                    col = 0;
-                }
-            }
-        }
+        cells.put(row*nCols + col, getCell(row, col).marked());
     }
 
     String asText()
     {
         StringWriter result = new StringWriter(nRows*(2 + nCols*2));
-        for (int row = 0; row < nRows; row++) {
-            for (int col = 0; col < nCols; col++) {
+        for (int row = 0, index = 0; row < nRows; row++) {
+            for (int col = 0; col < nCols; col++, index++) {
+                Cell cell = cells.get(index);
                 result.append(' ');
-                result.append(board[row][col].getText());
+                result.append(cell != null ? cell.getText() : tiles.tile(index).getText());
             }
             result.append('\n');
         }
@@ -194,12 +199,10 @@ public class Board
     // printable deep copy of the board with all players in consistent positions
     Board consistentBoard()
     {
-        Board result = new Board(nRows, nCols);
-        for (int row = 0; row < nRows; row++) {
-            for (int col = 0; col < nCols; col++) {
-                Cell cell = board[row][col];
-                result.board[row][col] = new Cell(cell.getTile(), cell.getId());
-            }
+        Board result = new Board(this, offHeap);
+        for (Map.Entry<Integer, Cell> entry: cells.entrySet()) {
+            Cell cell = entry.getValue();
+            result.cells.put(entry.getKey(), new Cell(cell.getTile(), cell.getId()));
         }
         for (Player player: players.values()) {
             Position pos = player.getPosition();
@@ -217,7 +220,10 @@ public class Board
 
     boolean isAccessible(int row, int col)
     {
-        return isOnBoard(row, col) && board[row][col].isAccessible();
+        if (!isOnBoard(row, col))
+            return false;
+        Cell cell = cells.get(row*nCols + col);
+        return cell != null ? cell.isAccessible() : tiles.isAccessible(row*nCols + col);
     }
 
     Position move(Position position, Direction direction)
@@ -245,7 +251,7 @@ public class Board
     void register(Player player, int row, int col)
     {
         if (isOnBoard(row, col)) {
-            board[row][col].add(player);
+            getCell(row, col).add(player);
             players.put(player.getId(), player);
         }
     }
@@ -261,7 +267,7 @@ public class Board
     void deregister(Player player, int row, int col)
     {
         if (isOnBoard(row, col)) {
-            board[row][col].remove(player);
+            getCell(row, col).remove(player);
             players.remove(player.getId());
         }
     }
@@ -286,8 +292,8 @@ public class Board
         int row = player.getRow();
         int col = player.getCol();
         if (isOnBoard(newRow, newCol) && players.containsKey(player.getId())) {
-            board[row][col].remove(player);
-            board[newRow][newCol].add(player);
+            getCell(row, col).remove(player);
+            getCell(newRow, newCol).add(player);
             player.setRow(newRow);
             player.setCol(newCol);
         }
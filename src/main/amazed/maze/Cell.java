@@ -64,7 +64,7 @@ class Cell
 
     boolean isAccessible()
     {
-        return tile == Tile.EMPTY || tile == Tile.HEART;
+        return tile.isAccessible();
     }
 
     boolean isMarkable()
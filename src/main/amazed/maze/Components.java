@@ -0,0 +1,238 @@
+package amazed.maze;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <code>Components</code> labels the connected components of the
+ * graph of a maze, and records which of them contain a goal, so that
+ * whether a goal is reachable from a node is answered in constant
+ * time.
+ * <p>
+ * Components are computed by a concurrent union-find over the grid,
+ * run in the current fork/join pool: tasks over separate bands of
+ * rows union every accessible cell with its accessible east and south
+ * neighbors. Roots are linked by compare-and-set, always from the
+ * larger index to the smaller one, so that concurrent unions never
+ * form cycles and the root of every component is its first cell. A
+ * final pass numbers components densely, in order of their first
+ * cell.
+ * <p>
+ * Labelling takes two <code>int</code> per cell while it runs, and
+ * one afterwards.
+ *
+ * @see Maze#components()
+ */
+
+public final class Components
+{
+    // rows per task of the parallel passes
+    private static final int GRAIN = 64;
+
+    private final Graph graph;
+    // node index --> component, or -1 if not accessible
+    private final int[] labels;
+    private final int count;
+    // bit c set iff component c contains a goal
+    private final long[] goalBits;
+
+    Components(Graph graph)
+    {
+        this.graph = graph;
+        int size = graph.size();
+        AtomicIntegerArray parents = new AtomicIntegerArray(size);
+        new Union(parents, 0, graph.rows(), true).invoke();
+        new Union(parents, 0, graph.rows(), false).invoke();
+        labels = new int[size];
+        new Flatten(parents, 0, graph.rows()).invoke();
+        int nComponents = 0;
+        for (int index = 0; index < size; index++) {
+            int root = labels[index];
+            if (root == index)
+                labels[index] = nComponents++;
+            else if (root != -1)
+                labels[index] = labels[root];   // root < index is already numbered
+        }
+        count = nComponents;
+        goalBits = new long[(count + 63) >>> 6];
+        for (int goal: graph.goals()) {
+            // a goal on an inaccessible cell can never be reached
+            if (labels[goal] != -1)
+                goalBits[labels[goal] >>> 6] |= 1L << labels[goal];
+        }
+    }
+
+    /**
+     * Unions the cells of rows <code>[from, to)</code> with their
+     * east and south neighbors or, in the initial pass, makes every
+     * cell its own root.
+     */
+    private class Union
+        extends RecursiveAction
+    {
+        private final AtomicIntegerArray parents;
+        private final int from, to;
+        private final boolean initial;
+
+        Union(AtomicIntegerArray parents, int from, int to, boolean initial)
+        {
+            this.parents = parents;
+            this.from = from;
+            this.to = to;
+            this.initial = initial;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > GRAIN) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Union(parents, from, middle, initial),
+                          new Union(parents, middle, to, initial));
+                return;
+            }
+            int nRows = graph.rows(), nCols = graph.cols();
+            if (initial) {
+                for (int index = from * nCols; index < to * nCols; index++)
+                    parents.set(index, index);
+                return;
+            }
+            for (int row = from; row < to; row++) {
+                for (int col = 0, index = row * nCols; col < nCols; col++, index++) {
+                    if (!graph.isAccessible(index))
+                        continue;
+                    if (col + 1 < nCols && graph.isAccessible(index + 1))
+                        union(index, index + 1);
+                    if (row + 1 < nRows && graph.isAccessible(index + nCols))
+                        union(index, index + nCols);
+                }
+            }
+        }
+
+        private void union(int a, int b)
+        {
+            while (true) {
+                a = find(a);
+                b = find(b);
+                if (a == b)
+                    return;
+                if (a < b) {
+                    int t = a;
+                    a = b;
+                    b = t;
+                }
+                if (parents.compareAndSet(a, a, b))
+                    return;
+            }
+        }
+
+        private int find(int index)
+        {
+            return Components.find(parents, index);
+        }
+    }
+
+    // root of `index', halving the path on the way
+    private static int find(AtomicIntegerArray parents, int index)
+    {
+        while (true) {
+            int parent = parents.get(index);
+            if (parent == index)
+                return index;
+            int grandparent = parents.get(parent);
+            if (grandparent == parent)
+                return parent;
+            parents.compareAndSet(index, parent, grandparent);
+            index = grandparent;
+        }
+    }
+
+    /**
+     * Records the root of every cell of rows <code>[from, to)</code>.
+     */
+    private class Flatten
+        extends RecursiveAction
+    {
+        private final AtomicIntegerArray parents;
+        private final int from, to;
+
+        Flatten(AtomicIntegerArray parents, int from, int to)
+        {
+            this.parents = parents;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > GRAIN) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Flatten(parents, from, middle), new Flatten(parents, middle, to));
+                return;
+            }
+            int nCols = graph.cols();
+            for (int index = from * nCols; index < to * nCols; index++)
+                labels[index] = graph.isAccessible(index) ? find(parents, index) : -1;
+        }
+    }
+
+    /**
+     * Returns the number of connected components.
+     *
+     * @return   the number of components of accessible cells
+     */
+    public int count()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the component of node index <code>index</code>.
+     *
+     * @param index   a node index
+     * @return        its component in <code>[0, count())</code>, or -1
+     *                if the node is not accessible
+     */
+    public int component(int index)
+    {
+        return labels[index];
+    }
+
+    /**
+     * Tests whether component <code>c</code> contains a goal.
+     *
+     * @param c   a component
+     * @return    <code>true</code> if some goal is in <code>c</code>;
+     *            <code>false</code> otherwise
+     */
+    public boolean hasGoal(int c)
+    {
+        return (goalBits[c >>> 6] & (1L << c)) != 0;
+    }
+
+    /**
+     * Tests whether some goal can be reached from node index
+     * <code>index</code>. A search can leave an inaccessible node,
+     * such as a start node on a wall, through its accessible
+     * neighbors, though it can never enter one.
+     *
+     * @param index   a node index
+     * @return        <code>true</code> if <code>index</code>, or some
+     *                accessible neighbor of it if it is not accessible,
+     *                is connected to a goal; <code>false</code> otherwise
+     */
+    public boolean canReachGoal(int index)
+    {
+        int c = labels[index];
+        if (c != -1)
+            return hasGoal(c);
+        int[] neighbors = new int[Graph.MAX_DEGREE];
+        int count = graph.neighbors(index, neighbors);
+        for (int n = 0; n < count; n++) {
+            if (hasGoal(labels[neighbors[n]]))
+                return true;
+        }
+        return false;
+    }
+}
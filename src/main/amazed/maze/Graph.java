@@ -0,0 +1,502 @@
+package amazed.maze;
+
+import java.util.Arrays;
+
+/**
+ * <code>Graph</code> is an immutable, compiled representation of the
+ * adjacency structure of a maze.
+ * <p>
+ * A <code>Graph</code> is built once from a <code>Board</code>, the
+ * first time a maze is queried. Every cell of the board is assigned a
+ * dense <em>node index</em> in the range <code>[0, size())</code>, equal to
+ * <code>row * cols + col</code>. Adjacency is stored in compressed
+ * sparse row form: the accessible neighbors of the node with index
+ * <code>i</code> are <code>targets[offsets[i]]</code> up to (excluded)
+ * <code>targets[offsets[i + 1]]</code>, in the order of
+ * <code>Direction.values()</code>. Goal nodes are recorded in a
+ * bitset over node indices, for constant-time membership tests, and
+ * in an array of their indices grouped by row, for queries of the
+ * goal nearest to a node.
+ * <p>
+ * The graph of a board whose tiles are off the heap stores no
+ * adjacency arrays, which would take several bytes per cell: it
+ * computes the neighbors of a node from the bitset of accessible
+ * nodes instead, in the same order. Nor does it store tables of node
+ * identifiers, which it converts on the fly.
+ * <p>
+ * Node indices are distinct from node identifiers, which are the
+ * random values exposed by <code>Maze</code>; methods
+ * <code>indexOf</code> and <code>idOf</code> convert between the two
+ * in constant time. In a maze with dense identifiers the two coincide,
+ * and the graph stores no conversion tables. None of the query
+ * methods allocate, so they can be used freely on hot paths by
+ * concurrent solvers.
+ *
+ * @see Maze#graph()
+ */
+
+public final class Graph
+{
+    /**
+     * Maximum number of neighbors of any node.
+     */
+    public static final int MAX_DEGREE = 4;
+
+    private final int nRows;
+    private final int nCols;
+    private final int size;
+
+    // node index --> first position of its neighbors in targets;
+    // null if adjacency is implicit
+    private final int[] offsets;
+    // neighbor node indices, grouped by source node; null if
+    // adjacency is implicit
+    private final int[] targets;
+    private final int nEdges;
+    // bit i set iff node index i is a goal
+    private final long[] goals;
+    // bit i set iff node index i is accessible
+    private final long[] accessible;
+    // indices of all goal nodes, in increasing order
+    private final int[] goalIndices;
+    // rows with some goal, in increasing order, and the position in
+    // goalIndices of the first goal on each of them, plus an end marker
+    private final int[] goalRows;
+    private final int[] goalRowStarts;
+
+    // node index --> node identifier; null if identifiers are dense
+    // or adjacency is implicit
+    private final int[] ids;
+    // node identifier - idBase --> node index, or -1 if not a node id;
+    // null whenever ids is
+    private final int[] indices;
+    private final int idBase;
+    // conversion of identifiers without tables
+    private final NodeIds nodeIds;
+
+    // compile the graph of `board'
+    Graph(Board board)
+    {
+        nRows = board.getRows();
+        nCols = board.getCols();
+        size = nRows * nCols;
+        nodeIds = board.getIds();
+        boolean implicit = board.isOffHeap();
+        boolean tables = !board.hasDenseIds() && !implicit;
+        ids = tables ? new int[size] : null;
+        goals = new long[(size + 63) >>> 6];
+        accessible = new long[(size + 63) >>> 6];
+        boolean[] open = implicit ? null : new boolean[size];
+        TileStore tiles = board.getTiles();
+        // use the goal list of the map if it has one
+        int[] goalList = tiles.goals();
+        int nGoals = 0;
+        int minId = Integer.MAX_VALUE, maxId = Integer.MIN_VALUE;
+        for (int row = 0, index = 0; row < nRows; row++) {
+            for (int col = 0; col < nCols; col++, index++) {
+                if (tables) {
+                    int id = board.getId(index);
+                    ids[index] = id;
+                    minId = Math.min(minId, id);
+                    maxId = Math.max(maxId, id);
+                }
+                if (tiles.isAccessible(row, col)) {
+                    accessible[index >>> 6] |= 1L << index;
+                    if (!implicit)
+                        open[index] = true;
+                }
+                if (goalList == null && tiles.tile(row, col) == Tile.HEART) {
+                    goals[index >>> 6] |= 1L << index;
+                    nGoals++;
+                }
+            }
+        }
+        if (goalList != null) {
+            for (int index: goalList)
+                goals[index >>> 6] |= 1L << index;
+            nGoals = goalList.length;
+        }
+        goalIndices = new int[nGoals];
+        int nGoalRows = 0;
+        for (int word = 0, i = 0; i < nGoals; word++) {
+            for (long bits = goals[word]; bits != 0; bits &= bits - 1) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (i == 0 || row(index) != row(goalIndices[i - 1]))
+                    nGoalRows++;
+                goalIndices[i++] = index;
+            }
+        }
+        goalRows = new int[nGoalRows];
+        goalRowStarts = new int[nGoalRows + 1];
+        for (int i = 0, r = -1; i < nGoals; i++) {
+            if (r < 0 || row(goalIndices[i]) != goalRows[r]) {
+                goalRows[++r] = row(goalIndices[i]);
+                goalRowStarts[r] = i;
+            }
+        }
+        goalRowStarts[nGoalRows] = nGoals;
+        if (!tables) {
+            idBase = 0;
+            indices = null;
+        } else {
+            idBase = size == 0 ? 0 : minId;
+            indices = new int[size == 0 ? 0 : maxId - minId + 1];
+            Arrays.fill(indices, -1);
+            for (int index = 0; index < size; index++)
+                indices[ids[index] - idBase] = index;
+        }
+
+        if (implicit) {
+            offsets = null;
+            targets = null;
+            // every pair of adjacent nodes makes an edge towards each
+            // accessible one, as in the degrees of the compiled form
+            int edges = 0;
+            for (int row = 0, index = 0; row < nRows; row++) {
+                for (int col = 0; col < nCols; col++, index++) {
+                    int here = isAccessible(index) ? 1 : 0;
+                    if (col < nCols - 1)
+                        edges += here + (isAccessible(index + 1) ? 1 : 0);
+                    if (row < nRows - 1)
+                        edges += here + (isAccessible(index + nCols) ? 1 : 0);
+                }
+            }
+            nEdges = edges;
+            return;
+        }
+        // first pass counts edges, second pass fills them in
+        offsets = new int[size + 1];
+        int edges = 0;
+        for (int index = 0; index < size; index++) {
+            offsets[index] = edges;
+            edges += degree(open, index);
+        }
+        offsets[size] = edges;
+        nEdges = edges;
+        targets = new int[edges];
+        for (int index = 0; index < size; index++) {
+            int next = offsets[index];
+            int row = index / nCols, col = index % nCols;
+            // same order as Direction: NORTH, SOUTH, WEST, EAST
+            if (row > 0 && open[index - nCols])
+                targets[next++] = index - nCols;
+            if (row < nRows - 1 && open[index + nCols])
+                targets[next++] = index + nCols;
+            if (col > 0 && open[index - 1])
+                targets[next++] = index - 1;
+            if (col < nCols - 1 && open[index + 1])
+                targets[next++] = index + 1;
+        }
+    }
+
+    // degree of index computed from the accessible bitset
+    private int implicitDegree(int index)
+    {
+        int row = index / nCols, col = index - row * nCols, degree = 0;
+        if (row > 0 && isAccessible(index - nCols))
+            degree++;
+        if (row < nRows - 1 && isAccessible(index + nCols))
+            degree++;
+        if (col > 0 && isAccessible(index - 1))
+            degree++;
+        if (col < nCols - 1 && isAccessible(index + 1))
+            degree++;
+        return degree;
+    }
+
+    private int degree(boolean[] open, int index)
+    {
+        int row = index / nCols, col = index % nCols, degree = 0;
+        if (row > 0 && open[index - nCols])
+            degree++;
+        if (row < nRows - 1 && open[index + nCols])
+            degree++;
+        if (col > 0 && open[index - 1])
+            degree++;
+        if (col < nCols - 1 && open[index + 1])
+            degree++;
+        return degree;
+    }
+
+    /**
+     * Returns the number of nodes in the graph, which is also one more
+     * than the largest node index.
+     *
+     * @return   the number of nodes
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of rows of the maze.
+     *
+     * @return   the number of rows
+     */
+    public int rows()
+    {
+        return nRows;
+    }
+
+    /**
+     * Returns the number of columns of the maze.
+     *
+     * @return   the number of columns
+     */
+    public int cols()
+    {
+        return nCols;
+    }
+
+    /**
+     * Tests whether <code>id</code> is the identifier of a node.
+     *
+     * @param id   a candidate node identifier
+     * @return     <code>true</code> if <code>id</code> identifies a node
+     *             of the maze; <code>false</code> otherwise
+     */
+    public boolean hasId(int id)
+    {
+        if (indices == null)
+            return nodeIds.index(id) != -1;
+        long offset = (long) id - idBase;
+        return 0 <= offset && offset < indices.length && indices[(int) offset] != -1;
+    }
+
+    /**
+     * Returns the node index of the node with identifier
+     * <code>id</code>.
+     *
+     * @param id   the identifier of a node in the maze
+     * @return     the node index of <code>id</code>
+     */
+    public int indexOf(int id)
+    {
+        if (indices == null)
+            return nodeIds.index(id);
+        return indices[id - idBase];
+    }
+
+    /**
+     * Returns the identifier of the node with index
+     * <code>index</code>.
+     *
+     * @param index   a node index in <code>[0, size())</code>
+     * @return        the identifier of the node
+     */
+    public int idOf(int index)
+    {
+        if (ids == null)
+            return nodeIds.id(index);
+        return ids[index];
+    }
+
+    /**
+     * Returns the row of the node with index <code>index</code>.
+     *
+     * @param index   a node index
+     * @return        the row of the node on the board
+     */
+    public int row(int index)
+    {
+        return index / nCols;
+    }
+
+    /**
+     * Returns the column of the node with index <code>index</code>.
+     *
+     * @param index   a node index
+     * @return        the column of the node on the board
+     */
+    public int col(int index)
+    {
+        return index % nCols;
+    }
+
+    /**
+     * Returns the number of directed edges in the graph, that is the
+     * sum of the degrees of all nodes.
+     *
+     * @return   the number of edges
+     */
+    public int edges()
+    {
+        return nEdges;
+    }
+
+    /**
+     * Returns the number of accessible neighbors of the node with
+     * index <code>index</code>.
+     *
+     * @param index   a node index
+     * @return        the degree of the node, between 0 and {@link #MAX_DEGREE}
+     */
+    public int degree(int index)
+    {
+        if (offsets == null)
+            return implicitDegree(index);
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * Copies the indices of the accessible neighbors of the node with
+     * index <code>index</code> into <code>buffer</code>, starting at
+     * position 0.
+     *
+     * @param index    a node index
+     * @param buffer   an array of at least {@link #MAX_DEGREE} elements
+     * @return         the number of neighbors copied into <code>buffer</code>
+     */
+    public int neighbors(int index, int[] buffer)
+    {
+        if (offsets == null) {
+            int row = index / nCols, col = index - row * nCols, count = 0;
+            if (row > 0 && isAccessible(index - nCols))
+                buffer[count++] = index - nCols;
+            if (row < nRows - 1 && isAccessible(index + nCols))
+                buffer[count++] = index + nCols;
+            if (col > 0 && isAccessible(index - 1))
+                buffer[count++] = index - 1;
+            if (col < nCols - 1 && isAccessible(index + 1))
+                buffer[count++] = index + 1;
+            return count;
+        }
+        int from = offsets[index], to = offsets[index + 1];
+        for (int i = from; i < to; i++)
+            buffer[i - from] = targets[i];
+        return to - from;
+    }
+
+    /**
+     * Tests whether the node with index <code>index</code> contains a
+     * goal.
+     *
+     * @param index   a node index
+     * @return        <code>true</code> if the node is a goal;
+     *                <code>false</code> otherwise
+     */
+    public boolean isGoal(int index)
+    {
+        return (goals[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns the indices of all goal nodes, in increasing order.
+     *
+     * @return   a new array with the index of every goal node
+     */
+    public int[] goals()
+    {
+        return goalIndices.clone();
+    }
+
+    /**
+     * Returns the number of goal nodes.
+     *
+     * @return   the number of goals in the maze
+     */
+    public int goalCount()
+    {
+        return goalIndices.length;
+    }
+
+    /**
+     * Returns the index of the <code>i</code>-th goal node, in
+     * increasing order of index. Unlike <code>goals</code>, this
+     * method does not allocate.
+     *
+     * @param i   a number in <code>[0, goalCount())</code>
+     * @return    the index of the <code>i</code>-th goal node
+     */
+    public int goal(int i)
+    {
+        return goalIndices[i];
+    }
+
+    /**
+     * Returns the index of a goal node nearest to the node with index
+     * <code>index</code> in Manhattan distance, ignoring walls. The
+     * search visits the rows with goals in order of distance from the
+     * row of the node, and stops as soon as no farther row can hold a
+     * nearer goal.
+     *
+     * @param index   a node index
+     * @return        the index of a nearest goal node, or -1 if the
+     *                maze has no goals
+     */
+    public int nearestGoal(int index)
+    {
+        int row = row(index), col = col(index);
+        // first row with goals at or below row
+        int below = Arrays.binarySearch(goalRows, row);
+        if (below < 0)
+            below = -below - 1;
+        int above = below - 1;
+        int best = -1, bestDistance = Integer.MAX_VALUE;
+        while (above >= 0 || below < goalRows.length) {
+            int r;
+            if (below >= goalRows.length || (above >= 0 && row - goalRows[above] <= goalRows[below] - row))
+                r = above--;
+            else
+                r = below++;
+            int rowDistance = Math.abs(goalRows[r] - row);
+            if (rowDistance >= bestDistance)
+                break;
+            int goal = nearestInRow(r, col);
+            int distance = rowDistance + Math.abs(col(goal) - col);
+            if (distance < bestDistance) {
+                best = goal;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the Manhattan distance from the node with index
+     * <code>index</code> to a nearest goal, ignoring walls. This is a
+     * lower bound on the length of any path to a goal, suitable as a
+     * heuristic for searches.
+     *
+     * @param index   a node index
+     * @return        the distance to a nearest goal, or -1 if the
+     *                maze has no goals
+     */
+    public int goalDistance(int index)
+    {
+        int goal = nearestGoal(index);
+        if (goal == -1)
+            return -1;
+        return Math.abs(row(goal) - row(index)) + Math.abs(col(goal) - col(index));
+    }
+
+    // goal on the r-th row with goals whose column is nearest to col
+    private int nearestInRow(int r, int col)
+    {
+        int from = goalRowStarts[r], to = goalRowStarts[r + 1];
+        int key = goalRows[r] * nCols + col;
+        int i = Arrays.binarySearch(goalIndices, from, to, key);
+        if (i >= 0)
+            return key;
+        i = -i - 1;
+        if (i == from)
+            return goalIndices[from];
+        if (i == to)
+            return goalIndices[to - 1];
+        return key - goalIndices[i - 1] <= goalIndices[i] - key ? goalIndices[i - 1] : goalIndices[i];
+    }
+
+    /**
+     * Tests whether the node with index <code>index</code> can be
+     * entered. Only accessible nodes are neighbors of other nodes.
+     *
+     * @param index   a node index
+     * @return        <code>true</code> if the node is accessible;
+     *                <code>false</code> otherwise
+     */
+    public boolean isAccessible(int index)
+    {
+        return (accessible[index >>> 6] & (1L << index)) != 0;
+    }
+}
@@ -0,0 +1,463 @@
+package amazed.maze;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <code>JunctionGraph</code> is a reduced, weighted form of the graph
+ * of a maze, on which searches take far fewer steps than cell by
+ * cell.
+ * <p>
+ * It is built from a <code>Graph</code> in two stages, both run in
+ * the current fork/join pool. First, dead ends are filled: every
+ * accessible cell with at most one accessible neighbor, other than
+ * the start node and the goals, is pruned, and so is every cell that
+ * becomes such a dead end in turn. A start node on an inaccessible
+ * cell, which solvers leave but never enter, is kept as well, and so
+ * are its accessible neighbors, the first moves of every path. Tasks prune the dead ends of
+ * separate ranges of cells, each following its dead-end branches to
+ * the junction where they meet the rest of the maze; neighbor degrees
+ * are updated atomically, so that every branch is pruned exactly
+ * once. Pruning removes no path from the start node to a goal.
+ * <p>
+ * Second, corridors are contracted. The cells that survive pruning
+ * and are the start node, a goal, a neighbor of an inaccessible start
+ * node, or have other than two neighbors are <em>junctions</em>; every other surviving cell lies on a
+ * corridor between two junctions. Every junction gets a dense number
+ * in <code>[0, size())</code>, in order of cell index, and every
+ * corridor leaving it becomes an edge, weighted by the number of
+ * moves along the corridor. Edges are stored in compressed sparse row
+ * form: the edges leaving junction <code>j</code> are numbered from
+ * <code>edgeStart(j)</code> up to (excluded) <code>edgeEnd(j)</code>.
+ * <p>
+ * A path found on junctions, as the sequence of the edges it follows
+ * from the start junction, is turned back into a path of node
+ * identifiers by method <code>expand</code>, which walks the
+ * corridors of its edges.
+ *
+ * @see Maze#junctionGraph()
+ */
+
+public final class JunctionGraph
+{
+    // cells per task of the parallel passes
+    private static final int GRAIN = 1 << 14;
+    // degree of a pruned or inaccessible cell
+    private static final int DEAD = -1;
+
+    private final Graph graph;
+    private final int startCell;
+    // is the start node on an inaccessible cell?
+    private final boolean walledStart;
+    // bit i set iff cell index i survived pruning
+    private final long[] live;
+    private final int nLive;
+    // bit i set iff cell index i is a junction
+    private final long[] junctionBits;
+    // junction --> its cell index, in increasing order
+    private final int[] cells;
+
+    // junction --> first of its edges
+    private final int[] offsets;
+    // edge --> junction it leads to
+    private final int[] targets;
+    // edge --> moves along its corridor
+    private final int[] weights;
+    // edge --> cell index of its first move
+    private final int[] firsts;
+
+    // reduce `graph', whose start node has index `start'
+    JunctionGraph(Graph graph, int start)
+    {
+        this.graph = graph;
+        this.startCell = start;
+        this.walledStart = !graph.isAccessible(start);
+        int size = graph.size();
+        AtomicIntegerArray degrees = new AtomicIntegerArray(size);
+        new Degrees(degrees, 0, size).invoke();
+        new Prune(degrees, 0, size).invoke();
+
+        live = new long[(size + 63) >>> 6];
+        junctionBits = new long[live.length];
+        int count = 0, nJunctions = 0;
+        for (int index = 0; index < size; index++) {
+            int degree = degrees.get(index);
+            if (degree == DEAD)
+                continue;
+            live[index >>> 6] |= 1L << index;
+            count++;
+            if (degree != 2 || isKept(index)) {
+                junctionBits[index >>> 6] |= 1L << index;
+                nJunctions++;
+            }
+        }
+        nLive = count;
+        cells = new int[nJunctions];
+        offsets = new int[nJunctions + 1];
+        int nEdges = 0;
+        for (int word = 0, j = 0; word < junctionBits.length; word++) {
+            for (long bits = junctionBits[word]; bits != 0; bits &= bits - 1) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                cells[j] = index;
+                offsets[j++] = nEdges;
+                nEdges += degrees.get(index);
+            }
+        }
+        offsets[nJunctions] = nEdges;
+        targets = new int[nEdges];
+        weights = new int[nEdges];
+        firsts = new int[nEdges];
+        new Contract(0, nJunctions).invoke();
+    }
+
+    /**
+     * Counts the accessible neighbors of cells <code>[from, to)</code>.
+     */
+    private class Degrees
+        extends RecursiveAction
+    {
+        private final AtomicIntegerArray degrees;
+        private final int from, to;
+
+        Degrees(AtomicIntegerArray degrees, int from, int to)
+        {
+            this.degrees = degrees;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > GRAIN) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Degrees(degrees, from, middle), new Degrees(degrees, middle, to));
+                return;
+            }
+            for (int index = from; index < to; index++)
+                degrees.set(index, graph.isAccessible(index) || index == startCell ? graph.degree(index) : DEAD);
+        }
+    }
+
+    /**
+     * Prunes the dead ends among cells <code>[from, to)</code>, and
+     * every dead end that they leave behind.
+     */
+    private class Prune
+        extends RecursiveAction
+    {
+        private final AtomicIntegerArray degrees;
+        private final int from, to;
+
+        Prune(AtomicIntegerArray degrees, int from, int to)
+        {
+            this.degrees = degrees;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > GRAIN) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Prune(degrees, from, middle), new Prune(degrees, middle, to));
+                return;
+            }
+            int[] neighbors = new int[Graph.MAX_DEGREE];
+            for (int index = from; index < to; index++) {
+                if (claim(index))
+                    fill(index, neighbors);
+            }
+        }
+
+        // prune cell `index' if it is a dead end not pruned yet
+        private boolean claim(int index)
+        {
+            if (isKept(index))
+                return false;
+            while (true) {
+                int degree = degrees.get(index);
+                if (degree == DEAD || degree > 1)
+                    return false;
+                if (degrees.compareAndSet(index, degree, DEAD))
+                    return true;
+            }
+        }
+
+        // follow the branch from pruned cell `index' while it leaves dead ends
+        private void fill(int index, int[] neighbors)
+        {
+            while (true) {
+                int next = -1;
+                int count = graph.neighbors(index, neighbors);
+                for (int n = 0; n < count && next == -1; n++) {
+                    if (degrees.get(neighbors[n]) != DEAD)
+                        next = neighbors[n];
+                }
+                if (next == -1 || !decrement(next) || !claim(next))
+                    return;
+                index = next;
+            }
+        }
+
+        // decrement the degree of `index', unless it is pruned
+        private boolean decrement(int index)
+        {
+            while (true) {
+                int degree = degrees.get(index);
+                if (degree == DEAD)
+                    return false;
+                if (degrees.compareAndSet(index, degree, degree - 1))
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * Follows the corridors leaving junctions <code>[from, to)</code>.
+     */
+    private class Contract
+        extends RecursiveAction
+    {
+        private final int from, to;
+
+        Contract(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > GRAIN / 16) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Contract(from, middle), new Contract(middle, to));
+                return;
+            }
+            int[] neighbors = new int[Graph.MAX_DEGREE];
+            for (int j = from; j < to; j++) {
+                int edge = offsets[j];
+                int count = graph.neighbors(cells[j], neighbors);
+                for (int n = 0; n < count; n++) {
+                    int first = neighbors[n];
+                    if (!isLive(first))
+                        continue;
+                    int previous = cells[j], current = first, moves = 1;
+                    while (!isJunction(current)) {
+                        int next = follow(previous, current, neighbors);
+                        previous = current;
+                        current = next;
+                        moves++;
+                    }
+                    targets[edge] = junction(current);
+                    weights[edge] = moves;
+                    firsts[edge] = first;
+                    edge++;
+                    // follow may have overwritten the neighbors of cells[j]
+                    count = graph.neighbors(cells[j], neighbors);
+                }
+            }
+        }
+    }
+
+    // next cell along the corridor that enters `current' from `previous'
+    private int follow(int previous, int current, int[] buffer)
+    {
+        int count = graph.neighbors(current, buffer);
+        for (int n = 0; n < count; n++) {
+            if (buffer[n] != previous && isLive(buffer[n]))
+                return buffer[n];
+        }
+        throw new IllegalStateException("corridor interrupted at node index " + current);
+    }
+
+    // is cell `index' a junction whatever its degree?
+    private boolean isKept(int index)
+    {
+        if (index == startCell || graph.isGoal(index))
+            return true;
+        // no cell leads back to a walled start, so none of its
+        // neighbors is a dead end nor a corridor
+        return walledStart && Math.abs(graph.row(index) - graph.row(startCell))
+            + Math.abs(graph.col(index) - graph.col(startCell)) == 1;
+    }
+
+    private boolean isLive(int index)
+    {
+        return (live[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private boolean isJunction(int index)
+    {
+        return (junctionBits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns the number of junctions.
+     *
+     * @return   the number of junctions
+     */
+    public int size()
+    {
+        return cells.length;
+    }
+
+    /**
+     * Returns the number of edges, counting both directions of every
+     * corridor.
+     *
+     * @return   the number of edges
+     */
+    public int edges()
+    {
+        return targets.length;
+    }
+
+    /**
+     * Returns the number of cells that survived pruning, junctions and
+     * corridors together.
+     *
+     * @return   the number of cells left after dead-end filling
+     */
+    public int liveCells()
+    {
+        return nLive;
+    }
+
+    /**
+     * Returns the junction of the start node.
+     *
+     * @return   the number of the start junction
+     */
+    public int start()
+    {
+        return junction(startCell);
+    }
+
+    /**
+     * Returns the node index of the cell of junction <code>j</code>.
+     *
+     * @param j   a junction in <code>[0, size())</code>
+     * @return    the node index of its cell in the graph of the maze
+     */
+    public int cell(int j)
+    {
+        return cells[j];
+    }
+
+    /**
+     * Returns the junction at node index <code>index</code>.
+     *
+     * @param index   a node index
+     * @return        the number of the junction at <code>index</code>, or
+     *                -1 if that node is not a junction
+     */
+    public int junction(int index)
+    {
+        int j = Arrays.binarySearch(cells, index);
+        return j >= 0 ? j : -1;
+    }
+
+    /**
+     * Tests whether junction <code>j</code> is a goal.
+     *
+     * @param j   a junction
+     * @return    <code>true</code> if its cell contains a goal;
+     *            <code>false</code> otherwise
+     */
+    public boolean isGoal(int j)
+    {
+        return graph.isGoal(cells[j]);
+    }
+
+    /**
+     * Returns the first edge leaving junction <code>j</code>.
+     *
+     * @param j   a junction
+     * @return    the number of its first edge
+     */
+    public int edgeStart(int j)
+    {
+        return offsets[j];
+    }
+
+    /**
+     * Returns one more than the last edge leaving junction
+     * <code>j</code>.
+     *
+     * @param j   a junction
+     * @return    the end of the range of its edges
+     */
+    public int edgeEnd(int j)
+    {
+        return offsets[j + 1];
+    }
+
+    /**
+     * Returns the junction that edge <code>e</code> leads to.
+     *
+     * @param e   an edge
+     * @return    its target junction
+     */
+    public int target(int e)
+    {
+        return targets[e];
+    }
+
+    /**
+     * Returns the number of moves along edge <code>e</code>.
+     *
+     * @param e   an edge
+     * @return    the length of its corridor, at least 1
+     */
+    public int weight(int e)
+    {
+        return weights[e];
+    }
+
+    /**
+     * Expands a path on junctions into the path of node identifiers
+     * that it stands for. The first <code>count</code> elements of
+     * <code>edges</code> must be edges that form a path from the start
+     * junction, each leaving the junction that the previous one leads
+     * to.
+     *
+     * @param edges   the edges of the path, in order
+     * @param count   the number of edges in the path
+     * @return        the path from the start node along all the
+     *                corridors of the edges
+     * @throws IllegalArgumentException if the edges do not form a path
+     *                                  from the start junction
+     */
+    public Path expand(int[] edges, int count)
+    {
+        int length = 1;
+        for (int i = 0, at = start(); i < count; i++) {
+            int e = edges[i];
+            if (e < offsets[at] || e >= offsets[at + 1])
+                throw new IllegalArgumentException("edge " + e + " does not leave junction " + at);
+            length += weights[e];
+            at = targets[e];
+        }
+        Path.Builder path = new Path.Builder(length);
+        int[] buffer = new int[Graph.MAX_DEGREE];
+        int position = 0, previous = startCell;
+        path.set(position++, graph.idOf(previous));
+        for (int i = 0; i < count; i++) {
+            int e = edges[i];
+            int current = firsts[e];
+            path.set(position++, graph.idOf(current));
+            while (!isJunction(current)) {
+                int next = follow(previous, current, buffer);
+                previous = current;
+                current = next;
+                path.set(position++, graph.idOf(current));
+            }
+            previous = current;
+        }
+        return path.build();
+    }
+}
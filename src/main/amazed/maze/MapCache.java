@@ -0,0 +1,288 @@
+package amazed.maze;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <code>MapCache</code> keeps on disk what is learnt from map files,
+ * so that solving an unchanged map again skips parsing and
+ * searching.
+ * <p>
+ * Entries are keyed by the SHA-256 hash of the content of a map file,
+ * not by its name, in a directory of files named after the key:
+ * <ul>
+ * <li><code>KEY.bmap</code>: the map in binary form, with goal list and
+ * wall mask (see {@link BinaryMap}), which boards map in memory
+ * instead of parsing the text; maps that are binary already need no
+ * such file;</li>
+ * <li><code>KEY.SOLVER.path</code>: the outcome of the last search by
+ * solver <code>SOLVER</code>: the path found, as the row and column of
+ * each node, since node identifiers change at every load; or no path,
+ * meaning that no goal is reachable from the start node.</li>
+ * </ul>
+ * Files are validated when they are read: binary maps by their header,
+ * size and goal list, paths by their header, the dimensions of the map
+ * and the range of their coordinates. A file that fails is deleted and
+ * treated as missing. Clients must still check a cached path on the
+ * maze it is used on, and that no goal is reachable if the path is
+ * empty.
+ * <p>
+ * The cache is bounded by the total size of its files. Reading a file
+ * marks it as recently used; storing one deletes the least recently
+ * used files until the bound holds again. Files are written under a
+ * temporary name and then renamed, so that processes sharing a cache
+ * never read a partial file.
+ */
+
+final class MapCache
+{
+    /**
+     * Default bound on the total size of the files of a cache.
+     */
+    static final long DEFAULT_BYTES = 1L << 30;
+
+    private static final int MAGIC = 0x414d5a50;   // "AMZP"
+    private static final int VERSION = 1;
+    private static final String MAP_SUFFIX = ".bmap";
+    private static final String PATH_SUFFIX = ".path";
+
+    private final java.nio.file.Path directory;
+    private final long maxBytes;
+
+    /**
+     * Opens the cache in directory <code>directory</code>, creating it
+     * if needed.
+     *
+     * @param directory   the directory of the cache files
+     * @param maxBytes    the bound on the total size of the cache files
+     * @throws IOException if the directory cannot be created
+     */
+    MapCache(String directory, long maxBytes)
+    throws IOException
+    {
+        this.directory = Files.createDirectories(Paths.get(directory));
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the key of the content of map file <code>filename</code>.
+     *
+     * @param filename   a map file
+     * @return           the SHA-256 hash of its content, in hexadecimal
+     * @throws IOException if the file cannot be read
+     */
+    static String key(String filename)
+    throws IOException
+    {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (InputStream in = Files.newInputStream(Paths.get(filename))) {
+            byte[] buffer = new byte[1 << 16];
+            for (int n; (n = in.read(buffer)) > 0; )
+                digest.update(buffer, 0, n);
+        }
+        StringBuilder key = new StringBuilder(64);
+        for (byte b: digest.digest())
+            key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return key.toString();
+    }
+
+    /**
+     * Returns the cached binary form of the map with key
+     * <code>key</code>.
+     *
+     * @param key   the key of the map
+     * @return      the tiles of the map, or <code>null</code> if nothing
+     *              valid is cached
+     * @throws IOException if an invalid file cannot be deleted
+     */
+    TileStore tiles(String key)
+    throws IOException
+    {
+        java.nio.file.Path file = directory.resolve(key + MAP_SUFFIX);
+        if (!Files.exists(file))
+            return null;
+        BinaryMap map;
+        try {
+            map = BinaryMap.open(file.toString());
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            return null;
+        }
+        touch(file);
+        return map;
+    }
+
+    /**
+     * Stores the binary form of the map with key <code>key</code>,
+     * whose tiles are <code>tiles</code>.
+     *
+     * @param key     the key of the map
+     * @param tiles   the tiles of the map
+     * @throws IOException if the file cannot be written
+     */
+    void putTiles(String key, TileStore tiles)
+    throws IOException
+    {
+        store(directory.resolve(key + MAP_SUFFIX),
+              tmp -> BinaryMap.write(tiles, BinaryMap.GOALS | BinaryMap.WALLS, tmp.toString()));
+    }
+
+    /**
+     * Returns the cached outcome of solver <code>solver</code> on the
+     * map with key <code>key</code>, loaded as <code>maze</code>.
+     *
+     * @param key      the key of the map
+     * @param solver   the name of a solver
+     * @param maze     the maze loaded from the map
+     * @return         the cached path, in the node identifiers of
+     *                 <code>maze</code>; an empty path if no goal is
+     *                 reachable; <code>null</code> if nothing valid is
+     *                 cached
+     * @throws IOException if an invalid file cannot be deleted
+     */
+    Path path(String key, String solver, Maze maze)
+    throws IOException
+    {
+        java.nio.file.Path file = directory.resolve(key + "." + solver + PATH_SUFFIX);
+        if (!Files.exists(file))
+            return null;
+        Graph graph = maze.graph();
+        Path path;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                || in.readInt() != graph.rows() || in.readInt() != graph.cols())
+                throw new IOException(file + " is not a path on this map");
+            int length = in.readInt();
+            if (length < 0 || length > graph.size())
+                throw new IOException(file + " is a corrupted path");
+            Path.Builder builder = new Path.Builder(length);
+            for (int i = 0; i < length; i++) {
+                int row = in.readInt(), col = in.readInt();
+                if (row < 0 || row >= graph.rows() || col < 0 || col >= graph.cols())
+                    throw new IOException(file + " is a corrupted path");
+                builder.set(i, graph.idOf(row * graph.cols() + col));
+            }
+            if (in.read() != -1)
+                throw new IOException(file + " is a corrupted path");
+            path = builder.build();
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            return null;
+        }
+        touch(file);
+        return path;
+    }
+
+    /**
+     * Stores the outcome of solver <code>solver</code> on the map with
+     * key <code>key</code>, loaded as <code>maze</code>.
+     *
+     * @param key      the key of the map
+     * @param solver   the name of a solver
+     * @param maze     the maze loaded from the map
+     * @param path     the path found, or <code>null</code> if no goal is
+     *                 reachable
+     * @throws IOException if the file cannot be written
+     */
+    void putPath(String key, String solver, Maze maze, Path path)
+    throws IOException
+    {
+        Graph graph = maze.graph();
+        int length = path == null ? 0 : path.length();
+        Path.Coordinates coordinates = path == null ? null : path.coordinates(maze);
+        store(directory.resolve(key + "." + solver + PATH_SUFFIX), tmp -> {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                         Files.newOutputStream(tmp), 1 << 16))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(graph.rows());
+                    out.writeInt(graph.cols());
+                    out.writeInt(length);
+                    for (int i = 0; i < length; i++) {
+                        out.writeInt(coordinates.row(i));
+                        out.writeInt(coordinates.col(i));
+                    }
+                }
+            });
+    }
+
+    // writes a file of the cache
+    private interface Writer
+    {
+        void write(java.nio.file.Path file) throws IOException;
+    }
+
+    // write `file' through a temporary file, then evict
+    private void store(java.nio.file.Path file, Writer writer)
+    throws IOException
+    {
+        java.nio.file.Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            writer.write(tmp);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        evict();
+    }
+
+    private static void touch(java.nio.file.Path file)
+    throws IOException
+    {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    // delete least recently used files until the cache fits in maxBytes
+    private void evict()
+    throws IOException
+    {
+        List<java.nio.file.Path> files = new ArrayList<>();
+        Map<java.nio.file.Path, FileTime> lastUsed = new HashMap<>();
+        long total = 0;
+        try (DirectoryStream<java.nio.file.Path> entries = Files.newDirectoryStream(directory)) {
+            for (java.nio.file.Path file: entries) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(MAP_SUFFIX) && !name.endsWith(PATH_SUFFIX))
+                    continue;
+                try {
+                    total += Files.size(file);
+                    lastUsed.put(file, Files.getLastModifiedTime(file));
+                    files.add(file);
+                } catch (NoSuchFileException e) {
+                    // deleted meanwhile by another process
+                }
+            }
+        }
+        files.sort(Comparator.comparing(lastUsed::get));
+        for (int i = 0; i < files.size() && total > maxBytes; i++) {
+            try {
+                total -= Files.size(files.get(i));
+                Files.delete(files.get(i));
+            } catch (NoSuchFileException e) {
+                // deleted meanwhile by another process
+            }
+        }
+    }
+}
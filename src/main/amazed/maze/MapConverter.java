@@ -0,0 +1,55 @@
+package amazed.maze;
+
+import java.io.IOException;
+
+/**
+ * <code>MapConverter</code> converts text map files into the binary
+ * map format of {@link BinaryMap}, which boards load by mapping the
+ * file in memory instead of parsing it.
+ * <p>
+ * Binary maps include the goal list and the wall mask unless told
+ * otherwise. Binary map files can be given to <code>Maze</code> and
+ * <code>Amazed</code> wherever text map files are accepted.
+ */
+
+public class MapConverter
+{
+    private static void printUsageAndExit()
+    {
+        System.out.println("usage: java amazed.maze.MapConverter [-no-goals] [-no-walls] MAP [BMAP]\n"
+                           + "\n"
+                           + " MAP         text map file to convert\n"
+                           + " BMAP        binary map file to write (default: MAP with extension .bmap)\n"
+                           + " -no-goals   do not store the list of goals\n"
+                           + " -no-walls   do not store the wall mask");
+        System.exit(0);
+    }
+
+    public static void main(String[] args)
+    {
+        int flags = BinaryMap.GOALS | BinaryMap.WALLS;
+        String map = null, binary = null;
+        for (String arg: args) {
+            if (arg.equals("-no-goals"))
+                flags &= ~BinaryMap.GOALS;
+            else if (arg.equals("-no-walls"))
+                flags &= ~BinaryMap.WALLS;
+            else if (map == null)
+                map = arg;
+            else if (binary == null)
+                binary = arg;
+            else
+                printUsageAndExit();
+        }
+        if (map == null)
+            printUsageAndExit();
+        if (binary == null)
+            binary = map.replaceFirst("\\.map$", "") + ".bmap";
+        try {
+            BinaryMap.write(MapParser.parse(map), flags, binary);
+        } catch (IOException e) {
+            System.err.println("Error: cannot convert map file " + map + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
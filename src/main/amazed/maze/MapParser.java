@@ -0,0 +1,544 @@
+package amazed.maze;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <code>MapParser</code> reads a text map file into a compact array
+ * of tiles, one byte per cell, which it stores for a board.
+ * <p>
+ * A map file starts with a header line <code>$rows,cols</code>,
+ * followed by the symbols of the cells row by row. Whitespace is
+ * ignored anywhere; a row may span several lines, but a new row only
+ * starts at the beginning of a line. A line is ignored from the first
+ * <code>@</code> on, and so are symbols beyond the declared rows and
+ * columns. Unknown symbols are reported and read as empty cells.
+ * <p>
+ * The file is mapped in memory through a <code>FileChannel</code> and
+ * scanned byte by byte by a state machine that needs no per-line or
+ * per-cell allocation; loading takes time linear in the size of the
+ * file. Symbols are decoded as UTF-8 only to report unknown ones.
+ * <p>
+ * Once the header is read, a large body is parsed in parallel. It is
+ * split at line boundaries into chunks, and parsed in two passes over
+ * all chunks at once: the first counts the cells on every line, from
+ * which the row and column where every chunk starts follow; the
+ * second writes the tiles of every chunk, and collects its goals and
+ * its reports of unknown symbols, which are then merged in file
+ * order. The result, reports included, is the same as a sequential
+ * scan. Maps that declare their size more than once are parsed
+ * sequentially.
+ */
+
+final class MapParser
+    implements TileStore
+{
+    // bytes mapped in memory at a time
+    private static final int CHUNK = 1 << 30;
+    // bodies of fewer bytes are parsed sequentially
+    private static final long PARALLEL_BYTES = 1 << 20;
+    // chunks per worker of the pool, to balance uneven lines
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private static final Tile[] TILES = Tile.values();
+
+    // ASCII byte --> tile ordinal, or one of the classes below
+    private static final byte[] CLASSES = new byte[128];
+    private static final byte WHITESPACE = -1;
+    private static final byte END_OF_LINE = -2;
+    private static final byte OTHER = -3;
+
+    static {
+        Arrays.fill(CLASSES, OTHER);
+        // same as \s in a regular expression
+        CLASSES[' '] = CLASSES['\t'] = CLASSES[0x0B] = CLASSES['\f'] = WHITESPACE;
+        CLASSES['\n'] = CLASSES['\r'] = END_OF_LINE;
+        for (Tile tile: new Tile[] { Tile.EMPTY, Tile.SOLID, Tile.BRICK, Tile.HEART })
+            CLASSES[tile.getChar()] = (byte) tile.ordinal();
+    }
+
+    private static final byte HEART = (byte) Tile.HEART.ordinal();
+
+    // states of the scanner
+    private static final int LINE = 0;
+    private static final int HEADER = 1;
+    private static final int SKIP = 2;
+
+    private int nRows;
+    private int nCols;
+    // row * nCols + col --> ordinal of the tile at row, col
+    private byte[] tiles = new byte[0];
+    // indices of the goal cells, in increasing order
+    private int[] goals = new int[0];
+
+    private MapParser()
+    {
+    }
+
+    /**
+     * Parses map file <code>filename</code>, in parallel if it is
+     * large: in the fork/join pool of the calling task, or else in the
+     * common pool.
+     *
+     * @param filename   the name of the map file
+     * @return           the parsed map
+     * @throws IOException   if the file cannot be read, or the map has
+     *                       no cells
+     */
+    static MapParser parse(String filename)
+    throws IOException
+    {
+        ForkJoinPool pool = ForkJoinTask.getPool();
+        return parse(filename, pool != null ? pool : ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses map file <code>filename</code>, in parallel in
+     * <code>pool</code> if it is large.
+     *
+     * @param filename   the name of the map file
+     * @param pool       the pool that parses chunks of the file
+     * @return           the parsed map
+     * @throws IOException   if the file cannot be read, or the map has
+     *                       no cells
+     */
+    static MapParser parse(String filename, ForkJoinPool pool)
+    throws IOException
+    {
+        MapParser parser = new MapParser();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            Scanner scanner = parser.new Scanner(0, 0);
+            // the header, and anything before it, sequentially
+            long body = 0;
+            while (body < size && parser.nCols == 0) {
+                long length = Math.min(CHUNK, size - body);
+                body += scanner.scan(channel.map(FileChannel.MapMode.READ_ONLY, body, length), true);
+            }
+            if (pool.getParallelism() <= 1 || size - body < PARALLEL_BYTES
+                || !parser.parseChunks(channel, body, size, scanner, pool)) {
+                for (long position = body; position < size; position += CHUNK) {
+                    long length = Math.min(CHUNK, size - position);
+                    scanner.scan(channel.map(FileChannel.MapMode.READ_ONLY, position, length), false);
+                }
+                // the last line need not be terminated
+                scanner.endLine();
+                parser.goals = scanner.goals.toArray();
+            }
+        }
+        // no header, or a header with no rows or columns: nothing to solve
+        if (parser.nRows == 0 || parser.nCols == 0)
+            throw new IOException(filename + " has no cells");
+        return parser;
+    }
+
+    @Override
+    public int rows()
+    {
+        return nRows;
+    }
+
+    @Override
+    public int cols()
+    {
+        return nCols;
+    }
+
+    @Override
+    public Tile tile(int index)
+    {
+        return TILES[tiles[index]];
+    }
+
+    @Override
+    public int[] goals()
+    {
+        return goals;
+    }
+
+    // parse the body [body, size) in chunks, continuing from the state
+    // of `scanner'; return false, leaving the tiles unchanged, if the
+    // body must be parsed sequentially
+    private boolean parseChunks(FileChannel channel, long body, long size, Scanner scanner, ForkJoinPool pool)
+    throws IOException
+    {
+        Chunk[] chunks = split(channel, body, size, pool.getParallelism() * CHUNKS_PER_WORKER);
+        if (chunks == null)
+            return false;
+        pool.invoke(new Pass(chunks, 0, chunks.length, false));
+        int row = scanner.row, col = scanner.col;
+        for (Chunk chunk: chunks) {
+            if (chunk.header)
+                return false;
+            chunk.row = row;
+            chunk.col = col;
+            // same moves as Scanner.put and Scanner.endLine
+            for (int line = 0; line < chunk.lines.size; line++) {
+                if (row < nRows)
+                    col = (int) Math.min((long) col + chunk.lines.values[line], nCols);
+                if (nCols > 0 && col == nCols) {
+                    row += 1;
+                    col = 0;
+                }
+            }
+        }
+        pool.invoke(new Pass(chunks, 0, chunks.length, true));
+        IntList merged = scanner.goals;
+        for (Chunk chunk: chunks) {
+            System.out.print(chunk.reports);
+            merged.addAll(chunk.goals);
+        }
+        goals = merged.toArray();
+        return true;
+    }
+
+    // about `count' chunks of [body, size) that end with a line, or
+    // null if a chunk is too long to map
+    private static Chunk[] split(FileChannel channel, long body, long size, int count)
+    throws IOException
+    {
+        long[] bounds = new long[count + 1];
+        int n = 0;
+        bounds[n++] = body;
+        ByteBuffer window = ByteBuffer.allocate(1 << 13);
+        for (int i = 1; i < count; i++) {
+            long target = Math.max(body + (size - body) * i / count, bounds[n - 1]);
+            long end = nextLine(channel, target, size, window);
+            if (end < size && end > bounds[n - 1])
+                bounds[n++] = end;
+        }
+        bounds[n++] = size;
+        Chunk[] chunks = new Chunk[n - 1];
+        for (int i = 0; i < chunks.length; i++) {
+            if (bounds[i + 1] - bounds[i] > CHUNK)
+                return null;
+            chunks[i] = new Chunk(bounds[i], bounds[i + 1], i == chunks.length - 1);
+        }
+        for (Chunk chunk: chunks)
+            chunk.buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+        return chunks;
+    }
+
+    // position after the first end of line at or after `position', or `size'
+    private static long nextLine(FileChannel channel, long position, long size, ByteBuffer window)
+    throws IOException
+    {
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++) {
+                byte b = window.get(i);
+                if (b == '\n' || b == '\r')
+                    return position + i + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * A part of the body of a map file, made of whole lines except
+     * possibly for the last part.
+     */
+    private static final class Chunk
+    {
+        final long start, end;
+        final boolean last;
+        ByteBuffer buffer;
+        // first pass: cells on every line, and whether a line starts a header
+        final IntList lines = new IntList();
+        boolean header;
+        // row and column of the first cell of the chunk
+        int row, col;
+        // second pass: goal cells, and reports of unknown symbols
+        final IntList goals = new IntList();
+        final StringBuilder reports = new StringBuilder();
+
+        Chunk(long start, long end, boolean last)
+        {
+            this.start = start;
+            this.end = end;
+            this.last = last;
+        }
+    }
+
+    /**
+     * Runs a pass over chunks <code>[from, to)</code>: counting cells
+     * per line, or writing tiles if <code>write</code>.
+     */
+    private class Pass
+        extends RecursiveAction
+    {
+        private final Chunk[] chunks;
+        private final int from, to;
+        private final boolean write;
+
+        Pass(Chunk[] chunks, int from, int to, boolean write)
+        {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.write = write;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Pass(chunks, from, middle, write), new Pass(chunks, middle, to, write));
+                return;
+            }
+            Chunk chunk = chunks[from];
+            Scanner scanner = write ? new Scanner(chunk) : new Scanner(chunk.lines);
+            scanner.scan(chunk.buffer, false);
+            if (chunk.last)
+                scanner.endLine();
+            chunk.header = scanner.headerSeen;
+        }
+    }
+
+    /**
+     * The state machine that scans a map file, or a chunk of one.
+     * <p>
+     * A scanner writes tiles into the parser and collects goals; a
+     * counting scanner only records the number of cells on every line
+     * it ends, and whether it saw a header. A scanner of a chunk
+     * buffers its reports instead of printing them.
+     */
+    private class Scanner
+    {
+        private int row, col;
+        private int state = LINE;
+        // some symbol other than whitespace was read on the current line
+        private boolean lineStarted;
+
+        // header being read: dimension (0 for rows, 1 for cols), value, digits
+        private int headerPart;
+        private final long[] header = new long[2];
+        private int headerDigits;
+        private boolean headerSeen;
+
+        // UTF-8 sequence being decoded: continuation bytes still expected
+        private int pending;
+        private int codePoint;
+
+        // cells per line, if counting
+        private final IntList lines;
+        private int lineCells;
+        private final IntList goals;
+        // reports, or null to print them
+        private final StringBuilder reports;
+
+        // scanner of a whole file, from row, col
+        Scanner(int row, int col)
+        {
+            this.row = row;
+            this.col = col;
+            lines = null;
+            goals = new IntList();
+            reports = null;
+        }
+
+        // scanner writing chunk `chunk'
+        Scanner(Chunk chunk)
+        {
+            row = chunk.row;
+            col = chunk.col;
+            lines = null;
+            goals = chunk.goals;
+            reports = chunk.reports;
+        }
+
+        // scanner counting the cells of every line into `lines'
+        Scanner(IntList lines)
+        {
+            this.lines = lines;
+            goals = null;
+            reports = null;
+        }
+
+        // scan `buffer', or only up to the end of the first line that
+        // declares the size of the map if `untilHeader'; return the
+        // number of bytes scanned
+        int scan(ByteBuffer buffer, boolean untilHeader)
+        {
+            int limit = buffer.limit();
+            for (int i = 0; i < limit; i++) {
+                int b = buffer.get(i) & 0xff;
+                if (pending > 0) {
+                    if ((b & 0xc0) == 0x80) {
+                        codePoint = (codePoint << 6) | (b & 0x3f);
+                        if (--pending == 0)
+                            unrecognized(codePoint);
+                        continue;
+                    }
+                    // truncated sequence; b starts a new symbol
+                    pending = 0;
+                    unrecognized(0xfffd);
+                }
+                byte kind = b < 0x80 ? CLASSES[b] : OTHER;
+                if (kind == END_OF_LINE) {
+                    endLine();
+                    if (untilHeader && nCols > 0)
+                        return i + 1;
+                } else if (kind != WHITESPACE && state != SKIP) {
+                    if (state == HEADER)
+                        header(b);
+                    else if (kind >= 0)
+                        put(kind);
+                    else
+                        symbol(b);
+                    lineStarted = true;
+                }
+            }
+            return limit;
+        }
+
+        // read symbol `b', which is not a tile, whitespace, or end of line
+        private void symbol(int b)
+        {
+            if (b == '@')
+                state = SKIP;
+            else if (b == '$') {
+                state = lineStarted ? SKIP : HEADER;
+                headerSeen |= state == HEADER;
+            } else if (b < 0x80)
+                unrecognized(b);
+            else if (b >= 0xc2 && b <= 0xdf)
+                startSequence(b & 0x1f, 1);
+            else if (b >= 0xe0 && b <= 0xef)
+                startSequence(b & 0x0f, 2);
+            else if (b >= 0xf0 && b <= 0xf4)
+                startSequence(b & 0x07, 3);
+            else
+                unrecognized(0xfffd);
+        }
+
+        private void startSequence(int bits, int continuations)
+        {
+            codePoint = bits;
+            pending = continuations;
+        }
+
+        // read header symbol `b', after the initial $
+        private void header(int b)
+        {
+            if ('0' <= b && b <= '9') {
+                // saturate, so that overflows are detected at the end of the line
+                header[headerPart] = Math.min(10 * header[headerPart] + (b - '0'), 1L << 32);
+                headerDigits++;
+            } else if (b == ',' && headerPart == 0 && headerDigits > 0) {
+                headerPart = 1;
+                headerDigits = 0;
+            } else
+                state = SKIP;
+        }
+
+        // put a tile in the next cell, unless it is beyond the declared ones
+        private void put(byte tile)
+        {
+            if (lines != null)
+                lineCells++;
+            else if (row < nRows && col < nCols) {
+                int index = row * nCols + col;
+                tiles[index] = tile;
+                if (tile == HEART)
+                    goals.add(index);
+                col += 1;
+            }
+        }
+
+        private void unrecognized(int symbol)
+        {
+            if (lines == null) {
+                if (!Character.isValidCodePoint(symbol))
+                    symbol = 0xfffd;
+                report("Unrecognized symbol " +
+                       new String(Character.toChars(symbol)) + " on " +
+                       "row " + row + " column " + col);
+                report("... using empty cell instead.");
+            }
+            put((byte) Tile.EMPTY.ordinal());
+        }
+
+        private void report(String line)
+        {
+            if (reports == null)
+                System.out.println(line);
+            else
+                reports.append(line).append(System.lineSeparator());
+        }
+
+        void endLine()
+        {
+            if (pending > 0) {
+                pending = 0;
+                unrecognized(0xfffd);
+            }
+            if (lines != null) {
+                lines.add(lineCells);
+                lineCells = 0;
+            } else if (state == HEADER && headerPart == 1 && headerDigits > 0) {
+                if (header[0] > Integer.MAX_VALUE || header[1] > Integer.MAX_VALUE)
+                    throw new NumberFormatException("map dimensions too large: " + header[0] + "," + header[1]);
+                nRows = (int) header[0];
+                nCols = (int) header[1];
+                tiles = new byte[Math.multiplyExact(nRows, nCols)];
+                goals.clear();
+            }
+            state = LINE;
+            lineStarted = false;
+            headerPart = 0;
+            header[0] = header[1] = 0;
+            headerDigits = 0;
+            if (nCols > 0 && col == nCols) {
+                row += 1;
+                col = 0;
+            }
+        }
+    }
+
+    /**
+     * A growable list of <code>int</code>s.
+     */
+    private static final class IntList
+    {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value)
+        {
+            if (size == values.length)
+                values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+
+        void addAll(IntList other)
+        {
+            if (size + other.size > values.length)
+                values = Arrays.copyOf(values, Math.max(2 * values.length, size + other.size));
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        void clear()
+        {
+            size = 0;
+        }
+
+        int[] toArray()
+        {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
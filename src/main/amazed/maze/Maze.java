@@ -3,7 +3,6 @@ package amazed.maze;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.HashSet;
-import java.util.ListIterator;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
@@ -18,12 +17,35 @@ import java.util.Set;
  * node has an identifier &mdash; an integer whose value is unique
  * within the maze.  Node identifiers are generated randomly at every
  * object creation, and thus they are not persistent or deterministic.
+ * Mazes created with <em>dense</em> identifiers instead identify the
+ * node at row <code>r</code> and column <code>c</code> by
+ * <code>r * cols + c</code>, the same in every run; clients that rely
+ * on identifiers being opaque should not use them.
  * <p>
  * Exploration of a maze begins at the start node, whose identifier
  * is returned by method <code>start</code>.  Given the identifier
  * of a node, method <code>neighbors</code> returns the set of
  * identifiers of all nodes adjacent to it.  Method
- * <code>hasGoal</code> determines if a given node contains a goal.
+ * <code>hasGoal</code> determines if a given node contains a goal,
+ * in constant time; methods <code>goals</code>,
+ * <code>goalCount</code> and <code>goalDistance</code> tell where
+ * the goals are.
+ * <p>
+ * Adjacency is precomputed into a compiled {@link Graph} the first
+ * time the maze is queried, so that queries do not search the board,
+ * and loading a map does not wait for compilation. Method
+ * <code>neighbors(int, int[])</code> is an allocation-free
+ * alternative to <code>neighbors(int)</code>, and method
+ * <code>graph</code> gives direct access to the compiled graph
+ * using dense node indices. Mazes of at least <code>1 &lt;&lt; 24</code>
+ * cells keep their tiles in native memory and compute adjacency on
+ * the fly, so that their board and graph take about two bits of heap
+ * per cell. Method <code>junctionGraph</code> gives a smaller,
+ * weighted graph of the same maze, without dead ends and with
+ * corridors contracted, for solvers that can search on it; method
+ * <code>components</code> labels its connected components, so that
+ * <code>isGoalReachable</code> answers in constant time whether any
+ * search can succeed.
  * <p>
  * Finally, methods <code>spawn</code> and <code>move</code> animate
  * icons of players that move around the maze in its graphical
@@ -35,6 +57,10 @@ import java.util.Set;
 public class Maze
 {
     private Board board;
+    // compiled on first use
+    private volatile Graph graph;
+    private volatile JunctionGraph junctions;
+    private volatile Components components;
 
     Board getBoard()
     {
@@ -50,9 +76,50 @@ public class Maze
      *
      * @param filename   the name of the text file containing the map
      */
-    Maze(String filename)
+    public Maze(String filename)
     {
-        board = new Board(filename);
+        this(new Board(filename));
+    }
+
+    /**
+     * Creates a maze by reading a map from file, with dense or random
+     * node identifiers.
+     *
+     * @param filename   the name of the text file containing the map
+     * @param denseIds   if <code>true</code>, the identifier of every
+     *                   node is its row times the number of columns
+     *                   plus its column; otherwise, identifiers are
+     *                   random as in {@link #Maze(String)}
+     */
+    public Maze(String filename, boolean denseIds)
+    {
+        this(new Board(filename, denseIds));
+    }
+
+    /**
+     * Creates a maze on a grid of tiles, for example one produced by a
+     * generator. The grid must not be changed afterwards.
+     *
+     * @param grid   the tiles of the maze
+     */
+    public Maze(TileGrid grid)
+    {
+        this(new Board(grid));
+    }
+
+    /**
+     * Creates a maze on a grid of tiles, with dense or random node
+     * identifiers. The grid must not be changed afterwards.
+     *
+     * @param grid       the tiles of the maze
+     * @param denseIds   if <code>true</code>, the identifier of every
+     *                   node is its row times the number of columns
+     *                   plus its column; otherwise, identifiers are
+     *                   random
+     */
+    public Maze(TileGrid grid, boolean denseIds)
+    {
+        this(new Board(grid, denseIds));
     }
 
     // initialize Maze wrapping given board
@@ -61,7 +128,14 @@ public class Maze
         this.board = board;
     }
 
-    void setDelay(int delay)
+    /**
+     * Sets the pause between animation steps. A non-positive
+     * <code>delay</code> disables animation altogether, which is
+     * what non-interactive clients such as benchmarks want.
+     *
+     * @param delay   milliseconds of pause in every call to <code>move</code>
+     */
+    public void setDelay(int delay)
     {
         this.delay = delay;
         if (delay <= 0)
@@ -81,7 +155,95 @@ public class Maze
      */
     public int start()
     {
-        return board.getCell(0, 0).getId();
+        return board.getId(0);
+    }
+
+    /**
+     * Tests whether node identifiers in this maze are dense, that is
+     * equal to <code>row * cols + col</code> for the node at
+     * <code>row</code>, <code>col</code>.
+     *
+     * @return   <code>true</code> if identifiers are dense;
+     *           <code>false</code> if they are random
+     */
+    public boolean hasDenseIds()
+    {
+        return board.hasDenseIds();
+    }
+
+    /**
+     * Returns the compiled graph of this maze, which supports
+     * allocation-free queries over dense node indices.
+     *
+     * @return   the immutable graph of this maze
+     */
+    public Graph graph()
+    {
+        Graph graph = this.graph;
+        if (graph == null) {
+            synchronized (this) {
+                graph = this.graph;
+                if (graph == null)
+                    this.graph = graph = new Graph(board);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Returns the junction graph of this maze: its graph with dead
+     * ends pruned and corridors contracted into weighted edges. It is
+     * built on first use, in the fork/join pool of the calling task
+     * or else the common pool.
+     *
+     * @return   the immutable junction graph of this maze
+     */
+    public JunctionGraph junctionGraph()
+    {
+        JunctionGraph junctions = this.junctions;
+        if (junctions == null) {
+            synchronized (this) {
+                junctions = this.junctions;
+                if (junctions == null) {
+                    Graph graph = graph();
+                    this.junctions = junctions = new JunctionGraph(graph, graph.indexOf(start()));
+                }
+            }
+        }
+        return junctions;
+    }
+
+    /**
+     * Returns the connected components of this maze, labelled on
+     * first use in the fork/join pool of the calling task or else the
+     * common pool.
+     *
+     * @return   the immutable components of this maze
+     */
+    public Components components()
+    {
+        Components components = this.components;
+        if (components == null) {
+            synchronized (this) {
+                components = this.components;
+                if (components == null)
+                    this.components = components = new Components(graph());
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Tests whether some goal can be reached from the start node. The
+     * first call labels the components of the maze; later calls take
+     * constant time.
+     *
+     * @return   <code>true</code> if a path from the start node to a
+     *           goal exists; <code>false</code> otherwise
+     */
+    public boolean isGoalReachable()
+    {
+        return components().canReachGoal(graph().indexOf(start()));
     }
 
     /**
@@ -96,16 +258,33 @@ public class Maze
      */
     public Set<Integer> neighbors(int id)
     {
+        int[] buffer = new int[Graph.MAX_DEGREE];
+        int count = neighbors(id, buffer);
         Set<Integer> neighbors = new HashSet<>(4);
-        Position position = board.getPosition(id);
-        for (Direction direction: Direction.values()) {
-            Position newPosition = board.move(position, direction);
-            if (newPosition != null)
-                neighbors.add(board.getCell(newPosition).getId());
-        }
+        for (int i = 0; i < count; i++)
+            neighbors.add(buffer[i]);
         return neighbors;
     }
 
+    /**
+     * Copies the identifiers of all nodes directly adjacent to a given
+     * node, and accessible from it, into <code>buffer</code> starting
+     * at position 0. Unlike <code>neighbors(int)</code>, this method
+     * does not allocate.
+     *
+     * @param id       the identifier of a node in the maze
+     * @param buffer   an array of at least {@link Graph#MAX_DEGREE} elements
+     * @return         the number of identifiers copied into <code>buffer</code>
+     */
+    public int neighbors(int id, int[] buffer)
+    {
+        Graph graph = graph();
+        int count = graph.neighbors(graph.indexOf(id), buffer);
+        for (int i = 0; i < count; i++)
+            buffer[i] = graph.idOf(buffer[i]);
+        return count;
+    }
+
     /**
      * Tests whether a given node contains a goal.
      *
@@ -115,7 +294,49 @@ public class Maze
      */
     public boolean hasGoal(int id)
     {
-        return board.getCell(id).isHeart();
+        Graph graph = graph();
+        return graph.isGoal(graph.indexOf(id));
+    }
+
+    /**
+     * Returns the identifiers of all goal nodes, in order of position
+     * on the board, row by row. Backward searches can start from
+     * them.
+     *
+     * @return   a new array with the identifier of every goal node
+     */
+    public int[] goals()
+    {
+        Graph graph = graph();
+        int[] goals = new int[graph.goalCount()];
+        for (int i = 0; i < goals.length; i++)
+            goals[i] = graph.idOf(graph.goal(i));
+        return goals;
+    }
+
+    /**
+     * Returns the number of goal nodes.
+     *
+     * @return   the number of goals in the maze
+     */
+    public int goalCount()
+    {
+        return graph().goalCount();
+    }
+
+    /**
+     * Returns the Manhattan distance from a given node to a nearest
+     * goal, ignoring walls, which is a lower bound on the length of
+     * any path from the node to a goal.
+     *
+     * @param id   the identifier of a node in the maze
+     * @return     the distance to a nearest goal, or -1 if the maze
+     *             has no goals
+     */
+    public int goalDistance(int id)
+    {
+        Graph graph = graph();
+        return graph.goalDistance(graph.indexOf(id));
     }
 
     /**
@@ -128,21 +349,48 @@ public class Maze
      *               nodes, and ends with a goal node;
      *               <code>false</code> otherwise
      */
-    boolean isValidPath(List<Integer> path)
+    public boolean isValidPath(List<Integer> path)
     {
-        if (path.isEmpty())
-            return false;
-        ListIterator<Integer> iter = path.listIterator();
-        int prev = 0, curr = iter.next();
-        if (curr != start())
+        return isValidPath(Path.of(path));
+    }
+
+    /**
+     * Tests whether a path corresponds to a connected path from the
+     * start node to a goal.
+     *
+     * @param path   a path of nodes in the maze
+     * @return       <code>true</code> if <code>path</code> begins with the
+     *               start node, follows a connected chain of adjacent
+     *               nodes, and ends with a goal node;
+     *               <code>false</code> otherwise
+     */
+    public boolean isValidPath(Path path)
+    {
+        if (path.length() == 0 || path.first() != start())
             return false;
-        while (iter.hasNext()) {
-            prev = curr;
-            curr = iter.next();
-            if (!neighbors(prev).contains(curr))
+        Graph graph = graph();
+        int[] buffer = new int[Graph.MAX_DEGREE];
+        int curr = graph.indexOf(path.first());
+        for (int i = 1; i < path.length(); i++) {
+            if (!graph.hasId(path.node(i)))
                 return false;
+            int prev = curr;
+            curr = graph.indexOf(path.node(i));
+            if (!isAdjacent(prev, curr, buffer))
+                return false;
+        }
+        return graph.isGoal(curr);
+    }
+
+    // is node index `to' among the neighbors of node index `from'?
+    private boolean isAdjacent(int from, int to, int[] buffer)
+    {
+        int count = graph().neighbors(from, buffer);
+        for (int i = 0; i < count; i++) {
+            if (buffer[i] == to)
+                return true;
         }
-        return hasGoal(curr);
+        return false;
     }
 
     /**
@@ -197,10 +445,12 @@ public class Maze
     /**
      * Highlights on the maze all nodes that can be highlighted in path.
      *
-     * @param path   a list of identifiers nodes in the maze
+     * @param path   a path of nodes in the maze
      */
-    void markPath(List<Integer> path)
+    void markPath(Path path)
     {
-        board.markPath(path);
+        Path.Coordinates coordinates = path.coordinates(this);
+        for (int i = 0; i < coordinates.length(); i++)
+            board.mark(coordinates.row(i), coordinates.col(i));
     }
 }
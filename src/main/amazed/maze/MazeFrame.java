@@ -2,25 +2,27 @@ package amazed.maze;
 
 import java.awt.BorderLayout;
 import java.awt.Dimension;
-import java.awt.GridLayout;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Color;
+import java.awt.Rectangle;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import javax.swing.ImageIcon;
-import javax.swing.OverlayLayout;
 import javax.swing.JFrame;
-import javax.swing.JButton;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.Timer;
 
 
-class CellButton extends JPanel {
+// the visible part of a board, painted cell by cell; cells outside
+// the clip of a paint are never materialized
+class BoardPanel extends JPanel {
 
-    private Cell cell;
+    private final Board board;
+    private final int cellWidth;
+    private final int cellHeight;
 
     private Color visibleTextColor(Player player)
     {
@@ -37,48 +39,53 @@ class CellButton extends JPanel {
         }
     }
 
-    CellButton(Cell cell)
+    BoardPanel(Board board)
     {
-        // super(new ImageIcon(cell.getImage()));
-        this.cell = cell;
-        setLayout(new OverlayLayout(this));
-        setOpaque(false);
-
-        JButton image = new JButton(new ImageIcon(cell.getImage()));
-        image.setAlignmentX(JButton.CENTER_ALIGNMENT);
-        image.setAlignmentY(JButton.CENTER_ALIGNMENT);
-
-        Player[] players = cell.getPlayers();
-        if (players.length > 1) {
-            JButton text = new JButton();
-            text.setText(Integer.toString(players.length));
-            text.setMaximumSize(new Dimension(50,50));
-            text.setAlignmentX(JButton.RIGHT_ALIGNMENT);
-            text.setAlignmentY(JButton.BOTTOM_ALIGNMENT);
-            text.setFont(new Font(null, Font.BOLD, 16));
-            text.setForeground(visibleTextColor(players[0]));
-            text.setBorder(null);
-            text.setOpaque(false);
-            text.setContentAreaFilled(false);
-            text.setBorderPainted(false);
-            add(text);
-        }
-        add(image);
+        this.board = board;
+        Cell cell = board.getCell(0, 0);
+        cellWidth = cell.getWidth();
+        cellHeight = cell.getHeight();
+        setOpaque(true);
+        setDoubleBuffered(true);
+        setFont(new Font(null, Font.BOLD, 16));
     }
 
+    // preferred size of panel, equal to the size of the whole board
     @Override
-    public boolean isOptimizedDrawingEnabled()
+    public Dimension getPreferredSize()
     {
-        return false;
+        return new Dimension(board.getCols() * cellWidth, board.getRows() * cellHeight);
     }
 
-    // preferred size of button, equal to image size
     @Override
-    public Dimension getPreferredSize()
+    protected void paintComponent(Graphics g)
     {
-        return new Dimension(cell.getWidth(), cell.getHeight());
+        super.paintComponent(g);
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(getPreferredSize());
+        int firstRow = Math.max(0, clip.y / cellHeight);
+        int lastRow = Math.min(board.getRows() - 1, (clip.y + clip.height - 1) / cellHeight);
+        int firstCol = Math.max(0, clip.x / cellWidth);
+        int lastCol = Math.min(board.getCols() - 1, (clip.x + clip.width - 1) / cellWidth);
+        Board b = board.consistentBoard();
+        g.setFont(getFont());
+        FontMetrics metrics = g.getFontMetrics();
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                Cell cell = b.getCell(row, col);
+                int x = col * cellWidth, y = row * cellHeight;
+                g.drawImage(cell.getImage(), x, y, null);
+                Player[] players = cell.getPlayers();
+                if (players.length > 1) {
+                    String count = Integer.toString(players.length);
+                    g.setColor(visibleTextColor(players[0]));
+                    g.drawString(count, x + cellWidth - metrics.stringWidth(count) - 2,
+                                 y + cellHeight - metrics.getDescent());
+                }
+            }
+        }
     }
-
 }
 
 
@@ -87,7 +94,7 @@ class MazeFrame
     implements ActionListener
 {
 
-    private JPanel panel;
+    private BoardPanel panel;
     private Board board;
 
     private Timer timer;
@@ -101,9 +108,7 @@ class MazeFrame
 
     private void initBoard()
     {
-        panel = new JPanel();
-        panel.setLayout(new GridLayout(board.getRows(), board.getCols(), 0, 0));
-        panel.setDoubleBuffered(true);
+        panel = new BoardPanel(board);
 
         // the following statements set up a <em>scollable</em> frame
         // to use a non-scrollable, replace all the following statements with:
@@ -113,6 +118,8 @@ class MazeFrame
         int scrWidth = Math.min(board.getWidth(), (int) screen.getWidth()) + 30;
         int scrHeight = Math.min(board.getHeight(), (int) screen.getHeight()) + 50;
         scrollFrame.setPreferredSize(new Dimension(scrWidth, scrHeight));
+        scrollFrame.getHorizontalScrollBar().setUnitIncrement(board.getWidth() / board.getCols());
+        scrollFrame.getVerticalScrollBar().setUnitIncrement(board.getHeight() / board.getRows());
         add(scrollFrame);
 
         pack();
@@ -125,17 +132,11 @@ class MazeFrame
         timer.start();
     }
 
+    // repaint the visible cells; the panel takes a consistent copy of
+    // the board for every paint
     private void displayBoard()
     {
-        panel.removeAll();
-        Board b = board.consistentBoard();
-        for (int row = 0; row < b.getRows(); row++) {
-            for (int col = 0; col < b.getCols(); col++) {
-                panel.add(new CellButton(b.getCell(row, col)));
-            }
-        }
         Toolkit.getDefaultToolkit().sync();
-        panel.revalidate();
         panel.repaint();
     }
 
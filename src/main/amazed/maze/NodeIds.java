@@ -0,0 +1,164 @@
+package amazed.maze;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <code>NodeIds</code> converts between the indices of the cells of a
+ * board, <code>row * cols + col</code>, and the node identifiers that
+ * <code>Maze</code> exposes to clients.
+ * <p>
+ * Random identifiers are distinct values in <code>[-size, size)</code>
+ * for a board of <code>size</code> cells, drawn afresh every time a
+ * board is created. Rather than shuffling and storing them, the
+ * identifier of index <code>i</code> is computed as
+ * <code>p(i) - size</code>, where <code>p</code> is a permutation of
+ * <code>[0, 2 * size)</code> given by a four-round Feistel network
+ * with random round keys, restricted to the range by cycle walking.
+ * Both directions take constant expected time and no memory
+ * proportional to the board.
+ * <p>
+ * Dense identifiers are the indices themselves. They are the same in
+ * every run, and convert with no computation at all, but they reveal
+ * the position of every node.
+ */
+
+abstract class NodeIds
+{
+    // identifier of the cell at index, in [0, size): IllegalArgumentException otherwise
+    abstract int id(int index);
+
+    // index of the cell with identifier id, or -1 if there is none
+    abstract int index(int id);
+
+    // is every identifier equal to its index?
+    boolean isDense()
+    {
+        return false;
+    }
+
+    // fresh random identifiers for a board of size cells
+    static NodeIds random(int size)
+    {
+        return new Scrambled(size);
+    }
+
+    // identifiers equal to indices, for a board of size cells
+    static NodeIds dense(int size)
+    {
+        return new Dense(size);
+    }
+
+    private static final class Dense
+        extends NodeIds
+    {
+        private final int size;
+
+        Dense(int size)
+        {
+            this.size = size;
+        }
+
+        @Override
+        boolean isDense()
+        {
+            return true;
+        }
+
+        @Override
+        int id(int index)
+        {
+            return index;
+        }
+
+        @Override
+        int index(int id)
+        {
+            return 0 <= id && id < size ? id : -1;
+        }
+    }
+
+    private static final class Scrambled
+        extends NodeIds
+    {
+        private static final int ROUNDS = 4;
+
+        private final int size;
+        // permuted domain [0, 2 * size)
+        private final long domain;
+        // bits of each half of a Feistel block
+        private final int half;
+        private final long mask;
+        private final int[] keys = new int[ROUNDS];
+
+        Scrambled(int size)
+        {
+            this.size = size;
+            this.domain = 2L * size;
+            int bits = 64 - Long.numberOfLeadingZeros(Math.max(domain - 1, 1));
+            half = (bits + 1) / 2;
+            mask = (1L << half) - 1;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int r = 0; r < ROUNDS; r++)
+                keys[r] = random.nextInt();
+        }
+
+        @Override
+        int id(int index)
+        {
+            // cycle walking only ends for a value in the permuted domain
+            if (index < 0 || index >= size)
+                throw new IllegalArgumentException("node index " + index + " outside [0, " + size + ")");
+            long x = index;
+            do {
+                x = encrypt(x);
+            } while (x >= domain);
+            return (int) (x - size);
+        }
+
+        @Override
+        int index(int id)
+        {
+            if (id < -size || id >= size)
+                return -1;
+            long x = (long) id + size;
+            do {
+                x = decrypt(x);
+            } while (x >= domain);
+            return x < size ? (int) x : -1;
+        }
+
+        private long encrypt(long x)
+        {
+            long left = x >>> half, right = x & mask;
+            for (int r = 0; r < ROUNDS; r++) {
+                long next = left ^ round(r, right);
+                left = right;
+                right = next;
+            }
+            return (left << half) | right;
+        }
+
+        private long decrypt(long x)
+        {
+            long left = x >>> half, right = x & mask;
+            for (int r = ROUNDS - 1; r >= 0; r--) {
+                long previous = right ^ round(r, left);
+                right = left;
+                left = previous;
+            }
+            return (left << half) | right;
+        }
+
+        // round function: a keyed 32-bit mix, truncated to a half block
+        private long round(int r, long value)
+        {
+            int h = (int) value * 0x9e3779b9 ^ keys[r];
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h & mask;
+        }
+    }
+}
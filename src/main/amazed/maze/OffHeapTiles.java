@@ -0,0 +1,178 @@
+package amazed.maze;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <code>OffHeapTiles</code> is a tile store in native memory, for
+ * boards too large to keep on the heap.
+ * <p>
+ * Every cell takes one byte: the ordinal of its tile in the low bits,
+ * and a flag recording whether the cell is accessible. Cells are laid
+ * out in square blocks of <code>BLOCK</code>&times;<code>BLOCK</code>
+ * cells, one page of memory each, stored block row after block row;
+ * cells within a block are stored row after row. Thus neighbors in all
+ * four directions are usually on the same page. Blocks are spread over direct buffers of
+ * at most <code>1 &lt;&lt; BUFFER_BITS</code> bytes, so that a store
+ * can exceed the 2 GB limit of a single buffer.
+ * <p>
+ * A store is filled in parallel by copying another store, after
+ * which it is read-only.
+ */
+
+final class OffHeapTiles
+    implements TileStore
+{
+    // cells per block side, and the corresponding shift
+    private static final int BLOCK_BITS = 6;
+    private static final int BLOCK = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK - 1;
+    // bytes per buffer
+    private static final int BUFFER_BITS = 30;
+    private static final int BLOCKS_PER_BUFFER = 1 << (BUFFER_BITS - 2 * BLOCK_BITS);
+
+    private static final Tile[] TILES = Tile.values();
+    // bits of a cell
+    private static final int TILE_MASK = 0x0f;
+    private static final int ACCESSIBLE = 0x10;
+
+    private final int nRows;
+    private final int nCols;
+    // number of blocks in a row of blocks
+    private final int blockCols;
+    private final ByteBuffer[] buffers;
+    // goal list of the original store, or null
+    private final int[] goals;
+
+    private OffHeapTiles(int rows, int cols, int[] goals)
+    {
+        nRows = rows;
+        nCols = cols;
+        blockCols = (cols + BLOCK_MASK) >>> BLOCK_BITS;
+        int blockRows = (rows + BLOCK_MASK) >>> BLOCK_BITS;
+        long blocks = (long) blockRows * blockCols;
+        buffers = new ByteBuffer[(int) ((blocks + BLOCKS_PER_BUFFER - 1) / BLOCKS_PER_BUFFER)];
+        for (int b = 0; b < buffers.length; b++) {
+            long size = Math.min(BLOCKS_PER_BUFFER, blocks - (long) b * BLOCKS_PER_BUFFER);
+            buffers[b] = ByteBuffer.allocateDirect((int) (size << (2 * BLOCK_BITS)));
+        }
+        this.goals = goals;
+    }
+
+    // off-heap copy of `store', filled in the current fork/join pool
+    static OffHeapTiles copyOf(TileStore store)
+    {
+        OffHeapTiles tiles = new OffHeapTiles(store.rows(), store.cols(), store.goals());
+        tiles.new Copy(store, 0, (store.rows() + BLOCK_MASK) >>> BLOCK_BITS).invoke();
+        return tiles;
+    }
+
+    /**
+     * Copies the rows of blocks <code>[from, to)</code> of a store.
+     */
+    private class Copy
+        extends RecursiveAction
+    {
+        private final TileStore store;
+        private final int from, to;
+
+        Copy(TileStore store, int from, int to)
+        {
+            this.store = store;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Copy(store, from, middle), new Copy(store, middle, to));
+                return;
+            }
+            int last = Math.min(nRows, to << BLOCK_BITS);
+            for (int row = from << BLOCK_BITS; row < last; row++) {
+                for (int col = 0, index = row * nCols; col < nCols; col++, index++) {
+                    int cell = store.tile(index).ordinal();
+                    if (store.isAccessible(index))
+                        cell |= ACCESSIBLE;
+                    put(row, col, (byte) cell);
+                }
+            }
+        }
+    }
+
+    private void put(int row, int col, byte cell)
+    {
+        long block = (long) (row >>> BLOCK_BITS) * blockCols + (col >>> BLOCK_BITS);
+        buffers[(int) (block / BLOCKS_PER_BUFFER)].put(offset(block, row, col), cell);
+    }
+
+    private int cell(int index)
+    {
+        int row = index / nCols;
+        return cell(row, index - row * nCols);
+    }
+
+    private int cell(int row, int col)
+    {
+        long block = (long) (row >>> BLOCK_BITS) * blockCols + (col >>> BLOCK_BITS);
+        return buffers[(int) (block / BLOCKS_PER_BUFFER)].get(offset(block, row, col));
+    }
+
+    // position of the cell at row, col in the buffer of `block'
+    private static int offset(long block, int row, int col)
+    {
+        int first = (int) (block % BLOCKS_PER_BUFFER) << (2 * BLOCK_BITS);
+        return first + ((row & BLOCK_MASK) << BLOCK_BITS) + (col & BLOCK_MASK);
+    }
+
+    @Override
+    public int rows()
+    {
+        return nRows;
+    }
+
+    @Override
+    public int cols()
+    {
+        return nCols;
+    }
+
+    @Override
+    public Tile tile(int index)
+    {
+        return TILES[cell(index) & TILE_MASK];
+    }
+
+    @Override
+    public Tile tile(int row, int col)
+    {
+        return TILES[cell(row, col) & TILE_MASK];
+    }
+
+    @Override
+    public boolean isAccessible(int index)
+    {
+        return (cell(index) & ACCESSIBLE) != 0;
+    }
+
+    @Override
+    public boolean isAccessible(int row, int col)
+    {
+        return (cell(row, col) & ACCESSIBLE) != 0;
+    }
+
+    @Override
+    public int[] goals()
+    {
+        return goals;
+    }
+
+    @Override
+    public boolean isOffHeap()
+    {
+        return true;
+    }
+}
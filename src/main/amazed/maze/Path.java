@@ -0,0 +1,262 @@
+package amazed.maze;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * <code>Path</code> is an immutable sequence of node identifiers,
+ * such as the path from the start node to a goal returned by a
+ * solver.
+ * <p>
+ * A path is backed by an <code>int</code> array of exactly its length.
+ * Solvers usually discover a path backwards, from its last node to its
+ * first, by following predecessors; they can count the nodes first,
+ * then fill a new array from its end with method <code>set</code> of
+ * a {@link Builder}, and never box or reverse anything.
+ * <p>
+ * Method <code>asList</code> adapts a path to the
+ * <code>List&lt;Integer&gt;</code> interface for clients that need
+ * it; method <code>coordinates</code> gives the row and column of each
+ * node on the board.
+ */
+
+public final class Path
+{
+    private final int[] nodes;
+
+    private Path(int[] nodes)
+    {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Returns a path with the node identifiers in <code>ids</code>, in
+     * the same order.
+     *
+     * @param ids   a list of node identifiers
+     * @return      a path with the same nodes as <code>ids</code>
+     */
+    public static Path of(List<Integer> ids)
+    {
+        int[] nodes = new int[ids.size()];
+        int i = 0;
+        for (int id: ids)
+            nodes[i++] = id;
+        return new Path(nodes);
+    }
+
+    /**
+     * Returns a path with the node identifiers in <code>ids</code>, in
+     * the same order.
+     *
+     * @param ids   an array of node identifiers, which is copied
+     * @return      a path with the same nodes as <code>ids</code>
+     */
+    public static Path of(int... ids)
+    {
+        return new Path(ids.clone());
+    }
+
+    /**
+     * Returns the number of nodes in the path.
+     *
+     * @return   the length of the path, counting both ends
+     */
+    public int length()
+    {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the identifier of the <code>i</code>-th node on the path.
+     *
+     * @param i   a position in <code>[0, length())</code>
+     * @return    the identifier of the node at position <code>i</code>
+     */
+    public int node(int i)
+    {
+        return nodes[i];
+    }
+
+    /**
+     * Returns the identifier of the first node on the path, which must
+     * not be empty.
+     *
+     * @return   the identifier of the node at position 0
+     */
+    public int first()
+    {
+        return nodes[0];
+    }
+
+    /**
+     * Returns the identifier of the last node on the path, which must
+     * not be empty.
+     *
+     * @return   the identifier of the node at position <code>length() - 1</code>
+     */
+    public int last()
+    {
+        return nodes[nodes.length - 1];
+    }
+
+    /**
+     * Returns a copy of the node identifiers on the path.
+     *
+     * @return   a new array with the node identifiers in order
+     */
+    public int[] toArray()
+    {
+        return nodes.clone();
+    }
+
+    /**
+     * Returns an unmodifiable <code>List&lt;Integer&gt;</code> view of
+     * this path. Elements are boxed only when they are accessed.
+     *
+     * @return   a list of the node identifiers in the path
+     */
+    public List<Integer> asList()
+    {
+        return new ListView();
+    }
+
+    /**
+     * Returns a view of the board coordinates of the nodes of this
+     * path in the maze <code>maze</code>, computed on access.
+     *
+     * @param maze   the maze that the nodes of this path belong to
+     * @return       the row and column of every node on the path
+     */
+    public Coordinates coordinates(Maze maze)
+    {
+        return new Coordinates(maze.graph());
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        return other instanceof Path && Arrays.equals(nodes, ((Path) other).nodes);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(nodes);
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(nodes);
+    }
+
+    /**
+     * <code>Builder</code> fills in a path of known length, in any
+     * order; usually from the last node to the first.
+     */
+    public static final class Builder
+    {
+        private int[] nodes;
+
+        /**
+         * Creates a builder of a path with <code>length</code> nodes.
+         *
+         * @param length   the number of nodes of the path
+         */
+        public Builder(int length)
+        {
+            nodes = new int[length];
+        }
+
+        /**
+         * Sets the <code>i</code>-th node of the path.
+         *
+         * @param i    a position in the path
+         * @param id   the identifier of the node at position <code>i</code>
+         * @return     this builder
+         */
+        public Builder set(int i, int id)
+        {
+            nodes[i] = id;
+            return this;
+        }
+
+        /**
+         * Returns the path built. The builder cannot be used afterwards.
+         *
+         * @return   the path with the nodes set so far
+         */
+        public Path build()
+        {
+            Path path = new Path(nodes);
+            nodes = null;
+            return path;
+        }
+    }
+
+    /**
+     * <code>Coordinates</code> gives the board position of each node of
+     * a path.
+     */
+    public final class Coordinates
+    {
+        private final Graph graph;
+
+        private Coordinates(Graph graph)
+        {
+            this.graph = graph;
+        }
+
+        /**
+         * Returns the number of nodes in the path.
+         *
+         * @return   the length of the path
+         */
+        public int length()
+        {
+            return nodes.length;
+        }
+
+        /**
+         * Returns the row of the <code>i</code>-th node on the path.
+         *
+         * @param i   a position in <code>[0, length())</code>
+         * @return    the row of the node at position <code>i</code>
+         */
+        public int row(int i)
+        {
+            return graph.row(graph.indexOf(nodes[i]));
+        }
+
+        /**
+         * Returns the column of the <code>i</code>-th node on the path.
+         *
+         * @param i   a position in <code>[0, length())</code>
+         * @return    the column of the node at position <code>i</code>
+         */
+        public int col(int i)
+        {
+            return graph.col(graph.indexOf(nodes[i]));
+        }
+    }
+
+    private class ListView
+        extends AbstractList<Integer>
+        implements RandomAccess
+    {
+        @Override
+        public Integer get(int i)
+        {
+            return nodes[i];
+        }
+
+        @Override
+        public int size()
+        {
+            return nodes.length;
+        }
+    }
+}
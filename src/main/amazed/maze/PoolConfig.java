@@ -0,0 +1,186 @@
+package amazed.maze;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <code>PoolConfig</code> describes the fork/join pool that an
+ * {@link Amazed} object creates to load and solve its maze, instead
+ * of using the common pool.
+ * <p>
+ * A configuration sets:
+ * <ul>
+ * <li>the <em>parallelism</em>: the number of workers that run tasks
+ * at the same time (default: the number of available processors);</li>
+ * <li>the <em>thread factory</em> that creates workers (default:
+ * daemon threads named <code>amazed-P-worker-N</code>, for the
+ * <code>P</code>-th pool created);</li>
+ * <li>the <em>async mode</em>: if set, workers run their own forked
+ * tasks in first-in first-out order rather than last-in first-out
+ * (default: not set, as suits tasks that join their subtasks);</li>
+ * <li>the <em>maximum number of threads</em>, counting the spare
+ * threads that the pool starts while workers are blocked (default:
+ * parallelism plus 256, as in <code>ForkJoinPool</code>);</li>
+ * <li>the <em>saturation policy</em>: what to do when a spare thread
+ * is needed beyond the maximum (default: reject the task that
+ * blocks, as in <code>ForkJoinPool</code>).</li>
+ * </ul>
+ * Worker threads of a <code>ForkJoinPool</code> cannot be given a
+ * stack size: they take the default stack size of the virtual
+ * machine, set by option <code>-Xss</code>.
+ */
+
+public final class PoolConfig
+{
+    /**
+     * What a pool does when it needs more threads than its maximum.
+     */
+    public enum Saturation
+    {
+        /** Fail the blocking task with <code>RejectedExecutionException</code>. */
+        REJECT,
+        /** Continue with fewer running workers than the parallelism. */
+        CONTINUE
+    }
+
+    // spare threads beyond the parallelism, as in ForkJoinPool
+    private static final int SPARE_THREADS = 256;
+    // seconds an idle worker is kept alive
+    private static final long KEEP_ALIVE = 60;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = null;
+    private boolean asyncMode = false;
+    private int maxThreads = -1;
+    private Saturation saturation = Saturation.REJECT;
+
+    /**
+     * Sets the parallelism.
+     *
+     * @param parallelism   the number of workers, at least 1
+     * @return              this configuration
+     */
+    public PoolConfig parallelism(int parallelism)
+    {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the factory of worker threads.
+     *
+     * @param threadFactory   the factory, or <code>null</code> for the
+     *                        default one
+     * @return                this configuration
+     */
+    public PoolConfig threadFactory(ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory)
+    {
+        this.threadFactory = threadFactory;
+        return this;
+    }
+
+    /**
+     * Sets the async mode.
+     *
+     * @param asyncMode   if <code>true</code>, forked tasks are run in
+     *                    first-in first-out order
+     * @return            this configuration
+     */
+    public PoolConfig asyncMode(boolean asyncMode)
+    {
+        this.asyncMode = asyncMode;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of threads.
+     *
+     * @param maxThreads   the maximum, at least the parallelism when the
+     *                     pool is created; -1 for the default
+     * @return             this configuration
+     */
+    public PoolConfig maxThreads(int maxThreads)
+    {
+        if (maxThreads < -1 || maxThreads == 0)
+            throw new IllegalArgumentException("maximum number of threads must be positive");
+        this.maxThreads = maxThreads;
+        return this;
+    }
+
+    /**
+     * Sets the saturation policy.
+     *
+     * @param saturation   the policy when the maximum number of threads
+     *                     is reached
+     * @return             this configuration
+     */
+    public PoolConfig saturation(Saturation saturation)
+    {
+        this.saturation = saturation;
+        return this;
+    }
+
+    /**
+     * Returns the parallelism.
+     *
+     * @return   the number of workers of pools with this configuration
+     */
+    public int parallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Creates a new pool with this configuration.
+     *
+     * @return   a new fork/join pool
+     * @throws IllegalArgumentException if the maximum number of threads
+     *                                  is smaller than the parallelism
+     */
+    public ForkJoinPool newPool()
+    {
+        int max = maxThreads == -1 ? parallelism + SPARE_THREADS : maxThreads;
+        if (max < parallelism)
+            throw new IllegalArgumentException("maximum number of threads " + max
+                                               + " is smaller than parallelism " + parallelism);
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory =
+            threadFactory != null ? threadFactory : new WorkerFactory();
+        boolean continueWhenSaturated = saturation == Saturation.CONTINUE;
+        return new ForkJoinPool(parallelism, factory, null, asyncMode,
+                                0, max, 1, pool -> continueWhenSaturated,
+                                KEEP_ALIVE, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "parallelism " + parallelism + (asyncMode ? ", async" : "")
+            + ", max threads " + (maxThreads == -1 ? parallelism + SPARE_THREADS : maxThreads)
+            + ", " + saturation.name().toLowerCase() + " when saturated";
+    }
+
+    /**
+     * Creates daemon workers named after their pool and number.
+     */
+    private static class WorkerFactory
+        implements ForkJoinPool.ForkJoinWorkerThreadFactory
+    {
+        private static final AtomicInteger pools = new AtomicInteger();
+
+        private final int pool = pools.incrementAndGet();
+        private final AtomicInteger workers = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+        {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("amazed-" + this.pool + "-worker-" + workers.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
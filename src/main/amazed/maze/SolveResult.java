@@ -0,0 +1,125 @@
+package amazed.maze;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>SolveResult</code> is the outcome of one call to
+ * <code>Amazed.solve</code>: whether a goal was found, no goal is
+ * reachable, or the search ran out of time; the path found, if any;
+ * and statistics of the search, which for a search that timed out
+ * describe the part of the search done before it stopped.
+ */
+
+public final class SolveResult
+{
+    /**
+     * How a solve ended.
+     */
+    public enum Status
+    {
+        /** A path to a goal was found. */
+        FOUND,
+        /** No goal is reachable from the start node. */
+        NOT_FOUND,
+        /** The deadline expired before the search ended. */
+        TIMED_OUT
+    }
+
+    private final Status status;
+    private final Path path;
+    private final int explored;
+    private final long elapsed;
+    private final boolean cached;
+
+    /**
+     * Creates the outcome of a solve.
+     *
+     * @param status     how the solve ended
+     * @param path       the path found, or <code>null</code> unless
+     *                   <code>status</code> is {@link Status#FOUND}
+     * @param explored   the number of nodes explored by the solver
+     * @param elapsed    the duration of the solve, in nanoseconds
+     * @param cached     if <code>true</code>, the outcome was read
+     *                   from the map cache and no solver ran
+     */
+    SolveResult(Status status, Path path, int explored, long elapsed, boolean cached)
+    {
+        this.status = status;
+        this.path = path;
+        this.explored = explored;
+        this.elapsed = elapsed;
+        this.cached = cached;
+    }
+
+    /**
+     * Returns how the solve ended.
+     *
+     * @return   the status of the solve
+     */
+    public Status status()
+    {
+        return status;
+    }
+
+    /**
+     * Returns the path found.
+     *
+     * @return   the path from the start node to a goal, or
+     *           <code>null</code> if none was found
+     */
+    public Path path()
+    {
+        return path;
+    }
+
+    /**
+     * Returns the number of nodes explored by the solver, as counted
+     * by the solver: <code>0</code> if no solver ran.
+     *
+     * @return   the number of nodes explored
+     */
+    public int explored()
+    {
+        return explored;
+    }
+
+    /**
+     * Returns the duration of the solve.
+     *
+     * @param unit   the unit of the result
+     * @return       the wall-clock time from the start of the solve to
+     *               its end, in <code>unit</code>
+     */
+    public long elapsed(TimeUnit unit)
+    {
+        return unit.convert(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Tests whether the outcome was read from the map cache.
+     *
+     * @return   <code>true</code> if no solver ran
+     */
+    public boolean isCached()
+    {
+        return cached;
+    }
+
+    @Override
+    public String toString()
+    {
+        String outcome;
+        switch (status) {
+        case FOUND:
+            outcome = "found path of " + path.length() + " nodes";
+            break;
+        case NOT_FOUND:
+            outcome = "no goal reachable";
+            break;
+        default:
+            outcome = "timed out";
+        }
+        return outcome + (cached ? " (cached)" : ", " + explored + " nodes explored")
+            + " in " + elapsed(TimeUnit.MILLISECONDS) + " ms";
+    }
+}
@@ -37,4 +37,10 @@ public enum Tile
     {
         return text.charValue();
     }
+
+    // can players enter a cell with this tile?
+    boolean isAccessible()
+    {
+        return this == EMPTY || this == HEART;
+    }
 }
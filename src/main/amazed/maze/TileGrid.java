@@ -0,0 +1,152 @@
+package amazed.maze;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * <code>TileGrid</code> is a mutable grid of tiles, one byte per
+ * cell, from which mazes can be built without a map file.
+ * <p>
+ * Programs such as maze generators fill in a grid with method
+ * <code>set</code>, then either create a <code>Maze</code> on it
+ * directly, or write it to a map file in text or binary format.
+ * Threads may set distinct cells concurrently. A grid must not be
+ * changed after a maze has been created on it.
+ * <p>
+ * All cells of a new grid are empty; only the tiles that map files
+ * can contain &mdash; <code>EMPTY</code>, <code>SOLID</code>,
+ * <code>BRICK</code> and <code>HEART</code> &mdash; are allowed.
+ */
+
+public final class TileGrid
+    implements TileStore
+{
+    private static final Tile[] TILES = Tile.values();
+    private static final Tile[] MAP_TILES = { Tile.EMPTY, Tile.SOLID, Tile.BRICK, Tile.HEART };
+
+    private final int nRows;
+    private final int nCols;
+    // row * nCols + col --> ordinal of the tile at row, col
+    private final byte[] tiles;
+
+    /**
+     * Creates a grid of empty cells.
+     *
+     * @param rows   the number of rows
+     * @param cols   the number of columns
+     */
+    public TileGrid(int rows, int cols)
+    {
+        if (rows <= 0 || cols <= 0)
+            throw new IllegalArgumentException("grid must have at least one row and column");
+        nRows = rows;
+        nCols = cols;
+        tiles = new byte[Math.multiplyExact(rows, cols)];
+    }
+
+    /**
+     * Returns the number of rows of the grid.
+     *
+     * @return   the number of rows
+     */
+    @Override
+    public int rows()
+    {
+        return nRows;
+    }
+
+    /**
+     * Returns the number of columns of the grid.
+     *
+     * @return   the number of columns
+     */
+    @Override
+    public int cols()
+    {
+        return nCols;
+    }
+
+    /**
+     * Returns the tile of the cell at index <code>row * cols() +
+     * col</code>.
+     *
+     * @param index   the index of a cell
+     * @return        the tile of that cell
+     */
+    @Override
+    public Tile tile(int index)
+    {
+        return TILES[tiles[index]];
+    }
+
+    /**
+     * Returns the tile at <code>row</code>, <code>col</code>.
+     *
+     * @param row   a row of the grid
+     * @param col   a column of the grid
+     * @return      the tile of the cell at that position
+     */
+    @Override
+    public Tile tile(int row, int col)
+    {
+        return TILES[tiles[row * nCols + col]];
+    }
+
+    /**
+     * Sets the tile at <code>row</code>, <code>col</code>.
+     *
+     * @param row    a row of the grid
+     * @param col    a column of the grid
+     * @param tile   the new tile of the cell at that position
+     */
+    public void set(int row, int col, Tile tile)
+    {
+        if (tile == Tile.MARKED || tile == Tile.FOUND)
+            throw new IllegalArgumentException("tile " + tile + " cannot be part of a map");
+        tiles[row * nCols + col] = (byte) tile.ordinal();
+    }
+
+    /**
+     * Writes this grid to <code>filename</code> in the text map
+     * format.
+     *
+     * @param filename   the name of the map file to write
+     * @throws IOException   if the file cannot be written
+     */
+    public void writeText(String filename)
+    throws IOException
+    {
+        char[] symbols = new char[TILES.length];
+        for (Tile tile: MAP_TILES)
+            symbols[tile.ordinal()] = tile.getChar();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(filename)), 1 << 16)) {
+            out.write(("$ " + nRows + " , " + nCols + "\n").getBytes(StandardCharsets.US_ASCII));
+            byte[] line = new byte[2 * nCols + 1];
+            for (int row = 0; row < nRows; row++) {
+                for (int col = 0; col < nCols; col++) {
+                    line[2 * col] = ' ';
+                    line[2 * col + 1] = (byte) symbols[tiles[row * nCols + col]];
+                }
+                line[2 * nCols] = '\n';
+                out.write(line);
+            }
+        }
+    }
+
+    /**
+     * Writes this grid to <code>filename</code> in the binary map
+     * format, with the goal list and the wall mask.
+     *
+     * @param filename   the name of the binary map file to write
+     * @throws IOException   if the file cannot be written
+     */
+    public void writeBinary(String filename)
+    throws IOException
+    {
+        BinaryMap.write(this, BinaryMap.GOALS | BinaryMap.WALLS, filename);
+    }
+}
@@ -0,0 +1,53 @@
+package amazed.maze;
+
+/**
+ * <code>TileStore</code> is the read-only backing store of the tiles
+ * of a board, as loaded from a map file.
+ * <p>
+ * Cells are addressed by their index <code>row * cols() + col</code>.
+ * Implementations keep tiles in compact form, and <code>Board</code>
+ * only creates <code>Cell</code> objects for the cells that the
+ * graphical representation or animated players actually touch. Large
+ * boards keep their tiles outside the heap, in a memory-mapped binary
+ * map or in <code>OffHeapTiles</code>.
+ */
+
+interface TileStore
+{
+    int rows();
+
+    int cols();
+
+    // tile of the cell at index
+    Tile tile(int index);
+
+    // tile of the cell at row, col
+    default Tile tile(int row, int col)
+    {
+        return tile(row*cols() + col);
+    }
+
+    // can players enter the cell at index?
+    default boolean isAccessible(int index)
+    {
+        return tile(index).isAccessible();
+    }
+
+    // can players enter the cell at row, col?
+    default boolean isAccessible(int row, int col)
+    {
+        return isAccessible(row*cols() + col);
+    }
+
+    // indices of all goal cells in increasing order, or null if unknown
+    default int[] goals()
+    {
+        return null;
+    }
+
+    // are tiles stored outside the Java heap?
+    default boolean isOffHeap()
+    {
+        return false;
+    }
+}
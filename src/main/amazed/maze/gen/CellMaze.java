@@ -0,0 +1,241 @@
+package amazed.maze.gen;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+
+import amazed.maze.Tile;
+import amazed.maze.TileGrid;
+
+/**
+ * <code>CellMaze</code> carves a maze of square cells separated by
+ * walls one tile thick into a grid, in parallel.
+ * <p>
+ * Every cell is a block of <code>size</code>&times;<code>size</code>
+ * empty tiles; two adjacent cells are linked by a door of one tile in
+ * the wall between them. The cell rows are split into bands of
+ * <code>BAND</code> rows, each carved by its own task: a randomized
+ * depth-first search links the cells of the band into a spanning
+ * tree, and consecutive bands are linked by exactly one door, so the
+ * whole maze is a spanning tree too &mdash; a perfect maze. Then, with
+ * probability <code>braid</code>, every dead end is linked to one
+ * more cell of its band, which adds loops.
+ * <p>
+ * Every band draws from its own random generator, seeded from the
+ * maze seed and the band number, so the result only depends on the
+ * seed, not on the number of threads or their scheduling.
+ */
+
+class CellMaze
+{
+    // cell rows per band
+    private static final int BAND = 128;
+
+    // link bits of a cell
+    private static final byte NORTH = 1, SOUTH = 2, WEST = 4, EAST = 8;
+    private static final byte[] DIRECTIONS = { NORTH, SOUTH, WEST, EAST };
+
+    private final TileGrid grid;
+    private final int size;
+    private final double braid;
+    private final long seed;
+    // number of cell rows and columns
+    private final int nRows, nCols;
+    private final int nBands;
+
+    CellMaze(TileGrid grid, int size, double braid, long seed)
+    {
+        this.grid = grid;
+        this.size = size;
+        this.braid = braid;
+        this.seed = seed;
+        nRows = (grid.rows() + 1) / (size + 1);
+        nCols = (grid.cols() + 1) / (size + 1);
+        if (nRows == 0 || nCols == 0)
+            throw new IllegalArgumentException("grid too small for cells of size " + size);
+        nBands = (nRows + BAND - 1) / BAND;
+    }
+
+    // carve the maze, running bands in the current fork/join pool
+    void carve()
+    {
+        new Bands(0, nBands).invoke();
+    }
+
+    static SplittableRandom random(long seed, long stream)
+    {
+        return new SplittableRandom(seed * 0x9e3779b97f4a7c15L + stream);
+    }
+
+    // column of the cell in the last row of band b linked to the next band
+    private int linkColumn(int band)
+    {
+        return random(seed, -1 - band).nextInt(nCols);
+    }
+
+    /**
+     * Carves bands <code>[from, to)</code>.
+     */
+    private class Bands
+        extends RecursiveAction
+    {
+        private final int from, to;
+
+        Bands(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Bands(from, middle), new Bands(middle, to));
+            } else
+                new Band(from).carve();
+        }
+    }
+
+    /**
+     * The cell rows of one band, with the links of its cells.
+     */
+    private class Band
+    {
+        private final int band;
+        private final int firstRow, height;
+        private final SplittableRandom random;
+        // cell (row - firstRow) * nCols + col --> its link bits
+        private final byte[] links;
+
+        Band(int band)
+        {
+            this.band = band;
+            firstRow = band * BAND;
+            height = Math.min(BAND, nRows - firstRow);
+            random = random(seed, band);
+            links = new byte[height * nCols];
+        }
+
+        void carve()
+        {
+            paint();
+            search();
+            if (band > 0)
+                links[linkColumn(band - 1)] |= NORTH;
+            if (band < nBands - 1) {
+                int col = linkColumn(band);
+                link((height - 1) * nCols + col, SOUTH);
+            }
+            if (braid > 0)
+                braid();
+        }
+
+        // fill the tiles of the band with walls, then empty its cells
+        private void paint()
+        {
+            int top = firstRow * (size + 1);
+            int bottom = band == nBands - 1 ? grid.rows() : (firstRow + height) * (size + 1);
+            for (int row = top; row < bottom; row++)
+                for (int col = 0; col < grid.cols(); col++)
+                    grid.set(row, col, Tile.SOLID);
+            for (int cell = 0; cell < links.length; cell++) {
+                int row = (firstRow + cell / nCols) * (size + 1), col = (cell % nCols) * (size + 1);
+                for (int i = 0; i < size; i++)
+                    for (int j = 0; j < size; j++)
+                        grid.set(row + i, col + j, Tile.EMPTY);
+            }
+        }
+
+        // link all cells of the band by a randomized depth-first search
+        private void search()
+        {
+            boolean[] visited = new boolean[links.length];
+            int[] stack = new int[links.length];
+            byte[] directions = new byte[4];
+            int top = 0;
+            int start = random.nextInt(links.length);
+            stack[top++] = start;
+            visited[start] = true;
+            while (top > 0) {
+                int cell = stack[top - 1];
+                int count = 0;
+                for (byte direction: DIRECTIONS) {
+                    int next = neighbor(cell, direction);
+                    if (next != -1 && !visited[next])
+                        directions[count++] = direction;
+                }
+                if (count == 0) {
+                    top--;
+                    continue;
+                }
+                byte direction = directions[random.nextInt(count)];
+                int next = link(cell, direction);
+                visited[next] = true;
+                stack[top++] = next;
+            }
+        }
+
+        // link dead ends to one more cell, each with probability braid
+        private void braid()
+        {
+            byte[] directions = new byte[4];
+            for (int cell = 0; cell < links.length; cell++) {
+                if (Integer.bitCount(links[cell]) != 1 || random.nextDouble() >= braid)
+                    continue;
+                int count = 0;
+                for (byte direction: DIRECTIONS) {
+                    if ((links[cell] & direction) == 0 && neighbor(cell, direction) != -1)
+                        directions[count++] = direction;
+                }
+                if (count > 0)
+                    link(cell, directions[random.nextInt(count)]);
+            }
+        }
+
+        // the cell of the band next to cell in direction, or -1
+        private int neighbor(int cell, byte direction)
+        {
+            int row = cell / nCols, col = cell % nCols;
+            switch (direction) {
+            case NORTH:
+                return row > 0 ? cell - nCols : -1;
+            case SOUTH:
+                return row < height - 1 ? cell + nCols : -1;
+            case WEST:
+                return col > 0 ? cell - 1 : -1;
+            default:
+                return col < nCols - 1 ? cell + 1 : -1;
+            }
+        }
+
+        // open a door from cell in direction, and return the cell it leads to
+        private int link(int cell, byte direction)
+        {
+            int row = (firstRow + cell / nCols) * (size + 1), col = (cell % nCols) * (size + 1);
+            int offset = random.nextInt(size);
+            links[cell] |= direction;
+            int next = neighbor(cell, direction);
+            switch (direction) {
+            case NORTH:
+                grid.set(row - 1, col + offset, Tile.EMPTY);
+                links[next] |= SOUTH;
+                break;
+            case SOUTH:
+                grid.set(row + size, col + offset, Tile.EMPTY);
+                // the door to the next band leads out of this band
+                if (next != -1)
+                    links[next] |= NORTH;
+                break;
+            case WEST:
+                grid.set(row + offset, col - 1, Tile.EMPTY);
+                links[next] |= EAST;
+                break;
+            default:
+                grid.set(row + offset, col + size, Tile.EMPTY);
+                links[next] |= WEST;
+            }
+            return next;
+        }
+    }
+}
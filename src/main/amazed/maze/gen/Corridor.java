@@ -0,0 +1,56 @@
+package amazed.maze.gen;
+
+import java.util.concurrent.RecursiveAction;
+
+import amazed.maze.Tile;
+import amazed.maze.TileGrid;
+
+/**
+ * <code>Corridor</code> paints a single corridor that snakes through
+ * the whole grid, in parallel.
+ * <p>
+ * Even rows are open from side to side; every odd row is a wall with
+ * one gap, alternately at the right and left end, so the only path
+ * from the top-left corner to the bottom row runs along every row in
+ * turn. Such a maze has no branches for parallel solvers to split on,
+ * and its shortest paths are about half as long as the maze is big.
+ */
+
+class Corridor
+    extends RecursiveAction
+{
+    // rows painted sequentially by a task
+    private static final int GRAIN = 64;
+
+    private final TileGrid grid;
+    private final int from, to;
+
+    Corridor(TileGrid grid)
+    {
+        this(grid, 0, grid.rows());
+    }
+
+    private Corridor(TileGrid grid, int from, int to)
+    {
+        this.grid = grid;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute()
+    {
+        if (to - from > GRAIN) {
+            int middle = (from + to) >>> 1;
+            invokeAll(new Corridor(grid, from, middle), new Corridor(grid, middle, to));
+            return;
+        }
+        int last = grid.cols() - 1;
+        for (int row = from; row < to; row++) {
+            // gap of the wall below corridor row - 1
+            int gap = (row / 2) % 2 == 0 ? last : 0;
+            for (int col = 0; col <= last; col++)
+                grid.set(row, col, row % 2 == 0 || col == gap ? Tile.EMPTY : Tile.SOLID);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package amazed.maze.gen;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import amazed.maze.Tile;
+import amazed.maze.TileGrid;
+
+/**
+ * <code>MazeGenerator</code> generates random mazes of any size,
+ * deterministically from a seed.
+ * <p>
+ * Four kinds of mazes are available:
+ * <ul>
+ * <li>{@link Kind#PERFECT}: corridors one tile wide, with exactly one
+ * path between any two cells;</li>
+ * <li>{@link Kind#BRAIDED}: a perfect maze where about half of the
+ * dead ends have been opened into loops;</li>
+ * <li>{@link Kind#ROOMS}: open square rooms linked by doors, with some
+ * loops;</li>
+ * <li>{@link Kind#CORRIDOR}: a single corridor that snakes through the
+ * whole maze, adversarial for parallel solvers.</li>
+ * </ul>
+ * The top-left cell, where searches start, is always empty. Goals are
+ * placed on empty cells, either at random or as far as possible from
+ * the start in Manhattan distance.
+ * <p>
+ * Generation runs in parallel on a <code>ForkJoinPool</code>, and its
+ * result depends only on the parameters and the seed. The generated
+ * grid can be turned into a maze with <code>new Maze(grid)</code>, or
+ * written to a text or binary map file.
+ *
+ * usage: java amazed.maze.gen.MazeGenerator KIND ROWS COLS OUT [SEED] [GOALS] [PLACEMENT]
+ */
+
+public class MazeGenerator
+{
+    /**
+     * The kinds of mazes that can be generated.
+     */
+    public enum Kind
+    {
+        PERFECT(1, 0),
+        BRAIDED(1, 0.5),
+        ROOMS(7, 0.3),
+        CORRIDOR(1, 0);
+
+        // side of the cells, fraction of dead ends opened
+        private final int size;
+        private final double braid;
+
+        Kind(int size, double braid)
+        {
+            this.size = size;
+            this.braid = braid;
+        }
+    }
+
+    /**
+     * Where goals are placed.
+     */
+    public enum Placement
+    {
+        /** On empty cells chosen at random. */
+        RANDOM,
+        /** On the empty cells farthest from the start node. */
+        FAR
+    }
+
+    private final Kind kind;
+    private final int rows;
+    private final int cols;
+    private final long seed;
+    private int goals = 1;
+    private Placement placement = Placement.FAR;
+
+    /**
+     * Creates a generator of mazes of kind <code>kind</code>, with
+     * <code>rows</code> rows and <code>cols</code> columns, and one
+     * goal placed far from the start.
+     *
+     * @param kind   the kind of maze
+     * @param rows   the number of rows
+     * @param cols   the number of columns
+     * @param seed   the seed of the random choices
+     */
+    public MazeGenerator(Kind kind, int rows, int cols, long seed)
+    {
+        this.kind = kind;
+        this.rows = rows;
+        this.cols = cols;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the number and placement of goals.
+     *
+     * @param count       the number of goals, possibly zero
+     * @param placement   where goals are placed
+     * @return            this generator
+     */
+    public MazeGenerator goals(int count, Placement placement)
+    {
+        if (count < 0)
+            throw new IllegalArgumentException("negative number of goals");
+        this.goals = count;
+        this.placement = placement;
+        return this;
+    }
+
+    /**
+     * Generates a maze in the common fork/join pool.
+     *
+     * @return   the tiles of the generated maze
+     */
+    public TileGrid generate()
+    {
+        return generate(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Generates a maze in <code>pool</code>.
+     *
+     * @param pool   the pool that runs generation tasks
+     * @return       the tiles of the generated maze
+     */
+    public TileGrid generate(ForkJoinPool pool)
+    {
+        TileGrid grid = new TileGrid(rows, cols);
+        if (kind == Kind.CORRIDOR)
+            pool.invoke(new Corridor(grid));
+        else {
+            CellMaze maze = new CellMaze(grid, kind.size, kind.braid, seed);
+            pool.submit(maze::carve).join();
+        }
+        placeGoals(grid);
+        return grid;
+    }
+
+    private void placeGoals(TileGrid grid)
+    {
+        int placed = 0;
+        if (placement == Placement.RANDOM) {
+            SplittableRandom random = CellMaze.random(seed, Long.MIN_VALUE);
+            // give up on mazes with too few empty cells
+            for (long attempts = 64L * goals + 1024; placed < goals && attempts > 0; attempts--) {
+                int row = random.nextInt(rows), col = random.nextInt(cols);
+                if (row + col > 0 && grid.tile(row, col) == Tile.EMPTY) {
+                    grid.set(row, col, Tile.HEART);
+                    placed++;
+                }
+            }
+        } else {
+            // anti-diagonals row + col = d, from the bottom-right corner
+            for (int d = rows + cols - 2; d > 0 && placed < goals; d--) {
+                for (int row = Math.min(rows - 1, d); row >= 0 && d - row < cols && placed < goals; row--) {
+                    if (grid.tile(row, d - row) == Tile.EMPTY) {
+                        grid.set(row, d - row, Tile.HEART);
+                        placed++;
+                    }
+                }
+            }
+        }
+        if (placed < goals)
+            throw new IllegalArgumentException("cannot place " + goals + " goals in the maze");
+    }
+
+    private static void printUsageAndExit()
+    {
+        System.out.println("usage: java amazed.maze.gen.MazeGenerator KIND ROWS COLS OUT [SEED] [GOALS] [PLACEMENT]\n"
+                           + "\n"
+                           + " KIND        'perfect', 'braided', 'rooms', or 'corridor'\n"
+                           + " ROWS COLS   size of the maze\n"
+                           + " OUT         map file to write, in binary format if it ends with .bmap\n"
+                           + " SEED        seed of the random choices (default: 1)\n"
+                           + " GOALS       number of goals (default: 1)\n"
+                           + " PLACEMENT   'far' from the start (default), or 'random'");
+        System.exit(0);
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length < 4 || args.length > 7)
+            printUsageAndExit();
+        MazeGenerator generator = null;
+        try {
+            Kind kind = Kind.valueOf(args[0].toUpperCase());
+            long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+            generator = new MazeGenerator(kind, Integer.parseInt(args[1]), Integer.parseInt(args[2]), seed);
+            int goals = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+            Placement placement = args.length > 6 ? Placement.valueOf(args[6].toUpperCase()) : Placement.FAR;
+            generator.goals(goals, placement);
+        } catch (IllegalArgumentException e) {
+            printUsageAndExit();
+        }
+        long start = System.currentTimeMillis();
+        TileGrid grid = generator.generate();
+        long generated = System.currentTimeMillis();
+        String out = args[3];
+        try {
+            if (out.endsWith(".bmap"))
+                grid.writeBinary(out);
+            else
+                grid.writeText(out);
+        } catch (IOException e) {
+            System.err.println("Error: cannot write map file " + out);
+            System.exit(1);
+        }
+        System.out.println("Generated " + out + " in " + (generated - start) + " ms, written in "
+                           + (System.currentTimeMillis() - generated) + " ms");
+    }
+}
@@ -0,0 +1,142 @@
+package amazed.solver;
+
+import amazed.maze.Graph;
+import amazed.maze.Maze;
+import amazed.maze.Path;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <code>AStarSolver</code> implements a solver for <code>Maze</code>
+ * objects using a single-thread A* search.
+ * <p>
+ * Nodes are expanded in order of <code>g + h</code>, where
+ * <code>g</code> is the length of the best path found so far from the
+ * start node and <code>h</code> is the Manhattan distance to the
+ * nearest goal. Since every move on the grid has length one and goes
+ * in a cardinal direction, <code>h</code> never overestimates, and the
+ * first goal expanded is reached by a shortest path. The open list is
+ * a binary heap of primitive node indices.
+ * <p>
+ * Like <code>SequentialSolver</code>, the search moves one animated
+ * player along the nodes it expands.
+ */
+
+public class AStarSolver
+    extends RecursiveTask<Path>
+    implements TimeBounded
+{
+    /**
+     * The maze being searched.
+     */
+    protected Maze maze;
+
+    private int explored;
+    private Deadline deadline = Deadline.NONE;
+    private boolean timedOut = false;
+
+    /**
+     * Creates a solver that searches in <code>maze</code> from the
+     * start node to a nearest goal.
+     *
+     * @param maze   the maze to be searched
+     */
+    public AStarSolver(Maze maze)
+    {
+        this.maze = maze;
+    }
+
+    /**
+     * Searches for and returns a shortest path, as a sequence of node
+     * identifiers, that goes from the start node to a goal node in
+     * the maze. If such a path cannot be found (because there are no
+     * goals, or all goals are unreacheable), the method returns
+     * <code>null</code>.
+     *
+     * @return   the path of node identifiers from the start node to a
+     *           nearest goal node in the maze; <code>null</code> if such a
+     *           path cannot be found
+     */
+    @Override
+    public Path compute()
+    {
+        Graph graph = maze.graph();
+        GoalDistance h = new GoalDistance(graph);
+        int size = graph.size();
+        // node index --> length of the best path found from start, or -1
+        int[] g = new int[size];
+        int[] predecessor = new int[size];
+        boolean[] closed = new boolean[size];
+        Arrays.fill(g, -1);
+        int[] neighbors = new int[Graph.MAX_DEGREE];
+        IntMinHeap open = new IntMinHeap(64);
+
+        int start = graph.indexOf(maze.start());
+        int player = maze.newPlayer(maze.start());
+        g[start] = 0;
+        predecessor[start] = -1;
+        open.push(start, h.estimate(start));
+        while (!open.isEmpty()) {
+            if (deadline.isExpired()) {
+                timedOut = true;
+                return null;
+            }
+            int current = open.pop();
+            if (closed[current])
+                continue;                   // stale entry, expanded with a smaller key
+            closed[current] = true;
+            explored++;
+            maze.move(player, graph.idOf(current));
+            if (graph.isGoal(current))
+                return pathTo(graph, predecessor, current);
+            int nNeighbors = graph.neighbors(current, neighbors);
+            for (int n = 0; n < nNeighbors; n++) {
+                int nb = neighbors[n];
+                int cost = g[current] + 1;
+                if (g[nb] == -1 || cost < g[nb]) {
+                    g[nb] = cost;
+                    predecessor[nb] = current;
+                    open.push(nb, cost + h.estimate(nb));
+                }
+            }
+        }
+        // all reachable nodes explored, no goal found
+        return null;
+    }
+
+    /**
+     * Returns the number of nodes expanded by the search so far.
+     *
+     * @return   the number of nodes expanded
+     */
+    @Override
+    public int explored()
+    {
+        return explored;
+    }
+
+    @Override
+    public void setDeadline(Deadline deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    // the path from the start node to node index `to', following predecessor
+    static Path pathTo(Graph graph, int[] predecessor, int to)
+    {
+        int length = 0;
+        for (int node = to; node != -1; node = predecessor[node])
+            length++;
+        Path.Builder path = new Path.Builder(length);
+        for (int node = to, i = length - 1; node != -1; node = predecessor[node], i--)
+            path.set(i, graph.idOf(node));
+        return path.build();
+    }
+}
@@ -0,0 +1,89 @@
+package amazed.solver;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <code>AtomicBitSet</code> is a fixed-size, lock-free set of node
+ * indices that supports concurrent claiming.
+ * <p>
+ * Bits are packed 64 to a word in an <code>AtomicLongArray</code>.
+ * Method <code>claim</code> atomically sets a bit with a
+ * compare-and-set loop and reports whether the calling thread is the
+ * one that set it; hence, among any number of threads claiming the
+ * same index concurrently, exactly one succeeds. No method blocks.
+ */
+
+public class AtomicBitSet
+{
+    private final AtomicLongArray words;
+    private final int size;
+
+    /**
+     * Creates an empty set of indices in <code>[0, size)</code>.
+     *
+     * @param size   the number of indices in the set
+     */
+    public AtomicBitSet(int size)
+    {
+        this.size = size;
+        this.words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    /**
+     * Returns the number of indices this set can hold.
+     *
+     * @return   the size given on creation
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Atomically adds <code>index</code> to the set if it is not
+     * already present.
+     *
+     * @param index   an index in <code>[0, size())</code>
+     * @return        <code>true</code> if this call added
+     *                <code>index</code>; <code>false</code> if it was
+     *                already in the set
+     */
+    public boolean claim(int index)
+    {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current = words.get(word);
+        while ((current & mask) == 0) {
+            long witness = words.compareAndExchange(word, current, current | mask);
+            if (witness == current)
+                return true;
+            current = witness;
+        }
+        return false;
+    }
+
+    /**
+     * Tests whether <code>index</code> is in the set.
+     *
+     * @param index   an index in <code>[0, size())</code>
+     * @return        <code>true</code> if <code>index</code> has been claimed
+     */
+    public boolean contains(int index)
+    {
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns the number of indices in the set. The result is exact
+     * only if no index is claimed concurrently.
+     *
+     * @return   the number of claimed indices
+     */
+    public int cardinality()
+    {
+        int count = 0;
+        for (int i = 0; i < words.length(); i++)
+            count += Long.bitCount(words.get(i));
+        return count;
+    }
+}
@@ -0,0 +1,259 @@
+package amazed.solver;
+
+import amazed.maze.Graph;
+import amazed.maze.Maze;
+import amazed.maze.Path;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <code>BidirectionalSolver</code> implements a solver for
+ * <code>Maze</code> objects using a parallel bidirectional
+ * breadth-first search.
+ * <p>
+ * One side of the search expands forward from the start node; the
+ * other expands backward from all goal nodes at once. The two sides
+ * advance one level per round, each as its own fork/join subtree
+ * that splits large frontiers among several tasks. Every side records
+ * for each node it reaches the neighbor it was reached from. As soon
+ * as a node is reached by both sides, the two frontiers have met: the
+ * search stops, and the path is stitched together from the forward
+ * predecessors of the meeting node, and its backward successors down
+ * to a goal.
+ * <p>
+ * On mazes with long corridors, both sides together usually explore
+ * far fewer nodes than a one-sided search, as reported by
+ * <code>explored</code>. The path returned is not necessarily a
+ * shortest one. Searches are not animated.
+ * <p>
+ * Instances of <code>BidirectionalSolver</code> should be run by a
+ * <code>ForkJoinPool</code> object.
+ */
+
+public class BidirectionalSolver
+    extends RecursiveTask<Path>
+    implements TimeBounded
+{
+    // frontier nodes expanded sequentially by a task
+    private static final int GRAIN = 256;
+
+    /**
+     * The maze being searched.
+     */
+    protected Maze maze;
+
+    private Graph graph;
+    private Side forward, backward;
+    // node index reached by both sides, or -1
+    private final AtomicInteger meeting = new AtomicInteger(-1);
+    private Deadline deadline = Deadline.NONE;
+    private boolean timedOut = false;
+
+    /**
+     * Creates a solver that searches in <code>maze</code> between the
+     * start node and the goals.
+     *
+     * @param maze   the maze to be searched
+     */
+    public BidirectionalSolver(Maze maze)
+    {
+        this.maze = maze;
+    }
+
+    /**
+     * Searches for and returns the path, as a sequence of node
+     * identifiers, that goes from the start node to a goal node in
+     * the maze. If such a path cannot be found (because there are no
+     * goals, or all goals are unreacheable), the method returns
+     * <code>null</code>.
+     *
+     * @return   the path of node identifiers from the start node to a
+     *           goal node in the maze; <code>null</code> if such a path cannot
+     *           be found
+     */
+    @Override
+    public Path compute()
+    {
+        graph = maze.graph();
+        forward = new Side(graph.size());
+        backward = new Side(graph.size());
+        forward.other = backward;
+        backward.other = forward;
+
+        int start = graph.indexOf(maze.start());
+        forward.seed(start);
+        for (int goal: graph.goals())
+            backward.seed(goal);
+        if (backward.reached(start))
+            meeting.set(start);
+
+        // if either side runs out of nodes, it has exhausted its
+        // connected component without meeting the other side
+        while (meeting.get() == -1 && forward.frontierSize > 0 && backward.frontierSize > 0) {
+            // rounds are not interrupted: stop between two rounds
+            if (deadline.isExpired()) {
+                timedOut = true;
+                return null;
+            }
+            invokeAll(forward.new Expand(0, forward.frontierSize),
+                      backward.new Expand(0, backward.frontierSize));
+            forward.advance();
+            backward.advance();
+        }
+        int meet = meeting.get();
+        return meet == -1 ? null : pathThrough(meet);
+    }
+
+    /**
+     * Returns the number of nodes reached so far by either side of the
+     * search, counting goals and the start node.
+     *
+     * @return   the number of nodes explored
+     */
+    @Override
+    public int explored()
+    {
+        if (forward == null)
+            return 0;
+        return forward.reachedCount.get() + backward.reachedCount.get();
+    }
+
+    @Override
+    public void setDeadline(Deadline deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    // the path from the start node through node index `meet' to a goal
+    private Path pathThrough(int meet)
+    {
+        int before = 0, after = 0;
+        for (int node = meet; node != -1; node = forward.predecessor(node))
+            before++;
+        for (int node = backward.predecessor(meet); node != -1; node = backward.predecessor(node))
+            after++;
+        Path.Builder path = new Path.Builder(before + after);
+        // forward predecessors lead from meet back to the start node
+        for (int node = meet, i = before - 1; node != -1; node = forward.predecessor(node), i--)
+            path.set(i, graph.idOf(node));
+        // backward predecessors lead from meet on to a goal
+        for (int node = backward.predecessor(meet), i = before; node != -1; node = backward.predecessor(node), i++)
+            path.set(i, graph.idOf(node));
+        return path.build();
+    }
+
+    /**
+     * One side of the search: the nodes it reached, with their
+     * predecessors, and its current frontier.
+     */
+    private class Side
+    {
+        // node index --> 1 + index of the node it was reached from;
+        // 0 if not reached, 1 + itself for seeds
+        private final AtomicIntegerArray reachedFrom;
+        private final AtomicInteger reachedCount = new AtomicInteger();
+        private int[] frontier, next;
+        private int frontierSize;
+        private final AtomicInteger nextSize = new AtomicInteger();
+        private Side other;
+
+        Side(int size)
+        {
+            reachedFrom = new AtomicIntegerArray(size);
+            frontier = new int[size];
+            next = new int[size];
+        }
+
+        // add `node' as a root of this side
+        void seed(int node)
+        {
+            if (claim(node, node))
+                frontier[frontierSize++] = node;
+        }
+
+        boolean claim(int node, int from)
+        {
+            if (reachedFrom.compareAndSet(node, 0, from + 1)) {
+                reachedCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        boolean reached(int node)
+        {
+            return reachedFrom.get(node) != 0;
+        }
+
+        // the node `node' was reached from, or -1 for roots
+        int predecessor(int node)
+        {
+            int from = reachedFrom.get(node) - 1;
+            return from == node ? -1 : from;
+        }
+
+        // make the nodes discovered in the last round the frontier
+        void advance()
+        {
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            frontierSize = nextSize.getAndSet(0);
+        }
+
+        /**
+         * Expands frontier nodes in <code>[from, to)</code> of this
+         * side.
+         */
+        private class Expand
+            extends RecursiveAction
+        {
+            private final int from, to;
+
+            Expand(int from, int to)
+            {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute()
+            {
+                if (to - from > GRAIN) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new Expand(from, middle), new Expand(middle, to));
+                    return;
+                }
+                int[] neighbors = new int[Graph.MAX_DEGREE];
+                int[] discovered = new int[(to - from) * Graph.MAX_DEGREE];
+                int count = 0;
+                for (int i = from; i < to && meeting.get() == -1; i++) {
+                    int node = frontier[i];
+                    int nNeighbors = graph.neighbors(node, neighbors);
+                    for (int n = 0; n < nNeighbors; n++) {
+                        int nb = neighbors[n];
+                        if (claim(nb, node)) {
+                            discovered[count++] = nb;
+                            // claim first, then check: of two sides
+                            // reaching nb concurrently, at least one
+                            // sees the other
+                            if (other.reached(nb))
+                                meeting.compareAndSet(-1, nb);
+                        }
+                    }
+                }
+                if (count > 0)
+                    System.arraycopy(discovered, 0, next, nextSize.getAndAdd(count), count);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package amazed.solver;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>Deadline</code> bounds the wall-clock time of searches. A
+ * deadline expires once, a given time after it is created, and stays
+ * expired; searches given the deadline check it at every step and
+ * stop when it has expired.
+ * <p>
+ * Checking a deadline only reads a volatile flag: the flag is set by
+ * a timer thread shared by all deadlines, so that searches do not read
+ * the clock at every step. Since searches stop at their next step, a
+ * search may overrun its deadline by the duration of one step, and
+ * more if the timer thread is not scheduled on time.
+ */
+
+public final class Deadline
+{
+    /**
+     * A deadline that never expires.
+     */
+    public static final Deadline NONE = new Deadline();
+
+    // sets the flag of deadlines when they expire
+    private static final ScheduledThreadPoolExecutor timer = newTimer();
+
+    private volatile boolean expired = false;
+    private final ScheduledFuture<?> alarm;
+
+    private Deadline()
+    {
+        alarm = null;
+    }
+
+    private Deadline(long nanos)
+    {
+        if (nanos <= 0) {
+            expired = true;
+            alarm = null;
+        } else
+            alarm = timer.schedule(() -> { expired = true; }, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns a deadline that expires <code>timeout</code> from now.
+     *
+     * @param timeout   the time until the deadline expires; if
+     *                  <code>timeout &lt;= 0</code> the deadline has
+     *                  already expired
+     * @param unit      the unit of <code>timeout</code>
+     * @return          a new deadline
+     */
+    public static Deadline after(long timeout, TimeUnit unit)
+    {
+        return new Deadline(unit.toNanos(timeout));
+    }
+
+    /**
+     * Tests whether this deadline has expired.
+     *
+     * @return   <code>true</code> if searches given this deadline
+     *           should stop
+     */
+    public boolean isExpired()
+    {
+        return expired;
+    }
+
+    /**
+     * Releases the timer of this deadline, which will then never
+     * expire unless it has already. Clients call this method when the
+     * search it bounds has ended.
+     */
+    public void release()
+    {
+        if (alarm != null)
+            alarm.cancel(false);
+    }
+
+    private static ScheduledThreadPoolExecutor newTimer()
+    {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "amazed-deadline");
+                thread.setDaemon(true);
+                return thread;
+            });
+        // released deadlines do not linger in the queue until they would expire
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+}
@@ -1,6 +1,8 @@
 package amazed.solver;
 
+import amazed.maze.Graph;
 import amazed.maze.Maze;
+import amazed.maze.Path;
 
 import java.util.List;
 import java.util.ArrayList;
@@ -16,6 +18,13 @@ import java.util.concurrent.ConcurrentHashMap;
  * <code>Maze</code> objects using a fork/join multi-thread
  * depth-first search.
  * <p>
+ * The first task that reaches a goal publishes the path in the
+ * shared context, which stops the search: every task leaves its loop
+ * at its next step and cancels the tasks it forked instead of joining
+ * them, so that forked tasks not started yet never run, and the
+ * search returns without waiting for subtrees that can no longer
+ * matter. An expired deadline stops the search in the same way.
+ * <p>
  * Instances of <code>ForkJoinSolver</code> should be run by a
  * <code>ForkJoinPool</code> object.
  */
@@ -32,15 +41,80 @@ public class ForkJoinSolver
      * @param maze   the maze to be searched
      */
 
-    static Set<Integer> visited = new HashSet<Integer>();
-    static volatile boolean found = false;
+    /**
+     * State shared by all tasks of the same search: nodes claimed so
+     * far by node index, and the published result. A node is claimed
+     * by the task that first discovers it, which is then the only task
+     * that records its predecessor and visits it. Created by the root
+     * task when it starts, and handed down to every child.
+     */
+    SearchContext context;
     int steps = 0;
 
+    /**
+     * If <code>true</code>, tasks fork when the pool runs low on
+     * queued work rather than after <code>forkAfter</code> steps.
+     */
+    boolean adaptive = false;
+
+    /**
+     * In adaptive mode, a task forks only while fewer than this many
+     * of its forked tasks are waiting to be stolen.
+     */
+    static final int SURPLUS_THRESHOLD = 2;
+
     public ForkJoinSolver(Maze maze)
     {
         super(maze);
     }
 
+    // child task continuing the search of `parent' from node `start',
+    // which has already been claimed
+    private ForkJoinSolver(ForkJoinSolver parent, int start)
+    {
+        super(parent.maze);
+        this.forkAfter = parent.forkAfter;
+        this.adaptive = parent.adaptive;
+        this.context = parent.context;
+        this.start = start;
+        frontier.push(start);
+    }
+
+    // child task continuing the search of `parent' from all nodes in
+    // `nodes', which have already been claimed
+    private ForkJoinSolver(ForkJoinSolver parent, List<Integer> nodes)
+    {
+        this(parent, nodes.get(0));
+        frontier.clear();
+        frontier.addAll(nodes);
+    }
+
+    /**
+     * Creates a solver that searches in <code>maze</code> from the
+     * start node to a goal, choosing adaptively when to fork.
+     * <p>
+     * In adaptive mode, a task forks whenever it has at least two
+     * nodes in its frontier and the number of tasks it forked that no
+     * other worker has stolen yet, as reported by
+     * <code>getSurplusQueuedTaskCount</code>, is below
+     * <code>SURPLUS_THRESHOLD</code>. Thus tasks are created when idle
+     * workers are looking for work, and not otherwise. A forking task
+     * donates the older half of its frontier &mdash; the nodes closest
+     * to where it started, which root the largest unexplored subtrees
+     * &mdash; to a single child.
+     *
+     * @param maze       the maze to be searched
+     * @param adaptive   if <code>true</code>, fork adaptively; otherwise
+     *                   never fork
+     */
+    public ForkJoinSolver(Maze maze, boolean adaptive)
+    {
+        this(maze);
+        this.adaptive = adaptive;
+        if (!adaptive)
+            this.forkAfter = Integer.MAX_VALUE;
+    }
+
     /**
      * Creates a solver that searches in <code>maze</code> from the
      * start node to a goal, forking after a given number of visited
@@ -61,43 +135,105 @@ public class ForkJoinSolver
     }
 
     /**
-     * Searches for and returns the path, as a list of node
+     * Searches for and returns the path, as a sequence of node
      * identifiers, that goes from the start node to a goal node in
      * the maze. If such a path cannot be found (because there are no
      * goals, or all goals are unreacheable), the method returns
      * <code>null</code>.
      *
-     * @return   the list of node identifiers from the start node to a
+     * @return   the path of node identifiers from the start node to a
      *           goal node in the maze; <code>null</code> if such a path cannot
      *           be found.
      */
 
 
     @Override
-    public List<Integer> compute()
+    public Path compute()
+    {
+        if (context != null)
+            return parallelSearch();
+        // root task: start a new search
+        context = new SearchContext(maze, deadline);
+        parallelSearch();
+        return context.result();
+    }
+
+    /**
+     * Initializes only <code>frontier</code>: visited nodes and
+     * predecessors are shared by all tasks through
+     * <code>context</code>.
+     */
+    @Override
+    protected void initStructures()
     {
-        return parallelSearch();
+        frontier = new Stack<>();
+    }
+
+    /**
+     * Returns the connected path of node identifiers that goes from
+     * node <code>from</code> to node <code>to</code> following the
+     * predecessors shared by all tasks of the search. If such a path
+     * cannot be reconstructed, the method returns <code>null</code>.
+     *
+     * @param from   the identifier of the initial node on the path
+     * @param to     the identifier of the final node on the path
+     * @return       the path of node identifiers from <code>from</code> to
+     *               <code>to</code>; <code>null</code> if there is no such path
+     */
+    @Override
+    protected Path pathFromTo(int from, int to)
+    {
+        Graph graph = maze.graph();
+        int first = graph.indexOf(from), last = graph.indexOf(to);
+        int length = 1;
+        for (int current = last; current != first; length++) {
+            current = context.predecessor(current);
+            if (current == -1)
+                return null;
+        }
+        Path.Builder path = new Path.Builder(length);
+        for (int current = last, i = length - 1; i >= 0; i--) {
+            path.set(i, graph.idOf(current));
+            current = context.predecessor(current);
+        }
+        return path.build();
+    }
+
+    /**
+     * Returns the number of nodes claimed by all tasks of the search
+     * so far.
+     *
+     * @return   the number of nodes visited
+     */
+    @Override
+    public int explored()
+    {
+        return context == null ? 0 : context.visited().cardinality();
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return context != null && context.isTimedOut();
     }
 
     /*
     Should utilize java's fork/join. Add parallelism to the sequential depth-first search
     Return the path if there is one, otherwise null
     */
-    private List<Integer> parallelSearch()
+    private Path parallelSearch()
     {
         ArrayList<ForkJoinSolver> tasks = new ArrayList<ForkJoinSolver>();
-        frontier.add(start);
+        Graph graph = maze.graph();
+        AtomicBitSet visited = context.visited();
+        if (frontier.empty()) {                     // root task: children start with a frontier
+            visited.claim(graph.indexOf(start));
+            frontier.push(start);
+        }
         boolean player_has_been_created = false;
         Integer player = null;
-        while (!frontier.empty() && !found) {
-            int current = frontier.pop();
-            synchronized (visited) {                 // lock visited, then read, then write
-                if (!visited.contains(current)) {
-                    visited.add(current);
-                } else {
-                    continue;                       // current is in visited, go back to while(!frontier....)
-                }
-            }                                       // unlock visited
+        while (!frontier.empty() && !context.isStopped()) {
+            int current = frontier.pop();           // claimed by this task when it was pushed
             if (!player_has_been_created) {
                 player = maze.newPlayer(current);
                 player_has_been_created = true;
@@ -106,49 +242,60 @@ public class ForkJoinSolver
             maze.move(player, current);
 
             if (maze.hasGoal(current)) {
-                found = true;
-                int counter = 1;
-                int i = start;
-                while (predecessor.get(i) != null) {
-                    i = predecessor.get(i);
-                    counter += 1;
-                }
-                return pathFromTo(i, current);
+                context.publish(pathFromTo(maze.start(), current));
+                break;
             }
 
-            for (int nb : maze.neighbors(current)) {
-                synchronized (visited) {
-                    if (!visited.contains(nb)) {
-                        predecessor.put(nb, current);
-                        frontier.push(nb);
-                        //steps++;
-                    }
+            int nNeighbors = maze.neighbors(current, neighbors);
+            for (int n = 0; n < nNeighbors; n++) {
+                int nb = neighbors[n];
+                int index = graph.indexOf(nb);
+                if (visited.claim(index)) {
+                    context.setPredecessor(index, graph.indexOf(current));
+                    frontier.push(nb);
                 }
             }
 
-            if (frontier.size() >= 2 && steps > forkAfter) {
+            if (adaptive) {
+                if (frontier.size() >= 2 && getSurplusQueuedTaskCount() < SURPLUS_THRESHOLD) {
+                    // donate the bottom half of the stack to one child
+                    List<Integer> bottom = frontier.subList(0, frontier.size() / 2);
+                    ForkJoinSolver child = new ForkJoinSolver(this, new ArrayList<Integer>(bottom));
+                    bottom.clear();
+                    child.fork();
+                    tasks.add(child);
+                }
+            } else if (frontier.size() >= 2 && steps > forkAfter) {
                 for (int i = 0; i < frontier.size() - 1; i++) {
-                    ForkJoinSolver child = new ForkJoinSolver(maze, forkAfter);
-                    child.start = this.frontier.pop();
-                    child.predecessor = new HashMap<Integer, Integer>(predecessor); // give copy of the parents predecessor-map to the child
+                    ForkJoinSolver child = new ForkJoinSolver(this, frontier.pop());
                     child.fork();
                     tasks.add(child);
                 }
                 steps = 0;
                 /*for (ForkJoinSolver task : tasks) {
-                    List<Integer> result = task.join();
+                    Path result = task.join();
                     if (result != null) {
                         return result;
                     }
                 }*/
             }
         }
-        for (ForkJoinSolver task: tasks) {
-            List<Integer> result = task.join();
-            if (result != null) {
-                return result;
+        if (!frontier.empty())
+            context.abandon();
+        for (int i = 0; i < tasks.size(); i++) {
+            if (context.isStopped()) {
+                // cancel the children not joined yet: those not started
+                // never run, and those running stop at their next step
+                // without being waited for; those already completed
+                // explored all their nodes, or recorded that they did not
+                for (int j = i; j < tasks.size(); j++) {
+                    if (tasks.get(j).cancel(false))
+                        context.abandon();
+                }
+                break;
             }
+            tasks.get(i).join();
         }
-        return null;
+        return context.result();
     }
 }
\ No newline at end of file
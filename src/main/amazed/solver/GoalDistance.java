@@ -0,0 +1,75 @@
+package amazed.solver;
+
+import amazed.maze.Graph;
+
+import java.util.Arrays;
+
+/**
+ * <code>GoalDistance</code> gives, for every node of a maze, the
+ * Manhattan distance to the nearest goal, ignoring walls. This is an
+ * admissible and consistent heuristic for searches on the grid, where
+ * every move goes to one of the four cardinal neighbors.
+ * <p>
+ * With few goals, distances are computed on demand by the goal index
+ * of the graph. With many goals, they are precomputed for all nodes by
+ * a two-pass city-block distance transform over the grid, which is
+ * exact for Manhattan distance and takes linear time.
+ */
+
+class GoalDistance
+{
+    // up to this many goals, distances are computed on demand
+    private static final int DIRECT_GOALS = 8;
+
+    private final Graph graph;
+    // node index --> distance, if precomputed
+    private final int[] distance;
+
+    GoalDistance(Graph graph)
+    {
+        this.graph = graph;
+        distance = graph.goalCount() > DIRECT_GOALS ? transform(graph, graph.goals()) : null;
+    }
+
+    /**
+     * Returns the Manhattan distance from node <code>index</code> to
+     * the nearest goal, or <code>Integer.MAX_VALUE / 2</code> if there
+     * are no goals.
+     *
+     * @param index   a node index
+     * @return        a lower bound on the length of any path from
+     *                <code>index</code> to a goal
+     */
+    int estimate(int index)
+    {
+        if (distance != null)
+            return distance[index];
+        int best = graph.goalDistance(index);
+        return best == -1 ? Integer.MAX_VALUE / 2 : best;
+    }
+
+    private static int[] transform(Graph graph, int[] goals)
+    {
+        int size = graph.size();
+        int nCols = graph.cols();
+        int[] distance = new int[size];
+        Arrays.fill(distance, Integer.MAX_VALUE / 2);
+        for (int goal: goals)
+            distance[goal] = 0;
+        // forward pass: from north and west neighbors
+        for (int index = 0; index < size; index++) {
+            if (index >= nCols)
+                distance[index] = Math.min(distance[index], distance[index - nCols] + 1);
+            if (index % nCols > 0)
+                distance[index] = Math.min(distance[index], distance[index - 1] + 1);
+        }
+        // backward pass: from south and east neighbors
+        for (int index = size - 1; index >= 0; index--) {
+            if (index + nCols < size)
+                distance[index] = Math.min(distance[index], distance[index + nCols] + 1);
+            if (index % nCols < nCols - 1)
+                distance[index] = Math.min(distance[index], distance[index + 1] + 1);
+        }
+        return distance;
+    }
+}
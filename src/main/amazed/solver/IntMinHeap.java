@@ -0,0 +1,110 @@
+package amazed.solver;
+
+import java.util.Arrays;
+
+/**
+ * <code>IntMinHeap</code> is a binary min-heap of <code>int</code>
+ * values ordered by <code>int</code> keys, stored in two parallel
+ * arrays so that no element is ever boxed.
+ * <p>
+ * The heap does not support decreasing the key of an element; instead,
+ * clients push the element again with the smaller key and skip stale
+ * entries when they are popped. Instances are not thread safe.
+ */
+
+class IntMinHeap
+{
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * Creates an empty heap with room for <code>capacity</code>
+     * elements before growing.
+     *
+     * @param capacity   the initial capacity, at least 1
+     */
+    IntMinHeap(int capacity)
+    {
+        keys = new int[Math.max(1, capacity)];
+        values = new int[keys.length];
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Adds <code>value</code> with priority <code>key</code>.
+     *
+     * @param value   the element to add
+     * @param key     its priority; smaller keys are popped first
+     */
+    void push(int value, int key)
+    {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+            values = Arrays.copyOf(values, 2 * size);
+        }
+        int i = size++;
+        // sift up
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key)
+                break;
+            keys[i] = keys[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    /**
+     * Returns the smallest key in the heap, which must not be empty.
+     *
+     * @return   the key of the element that <code>pop</code> returns next
+     */
+    int peekKey()
+    {
+        return keys[0];
+    }
+
+    /**
+     * Removes and returns an element with the smallest key; the heap
+     * must not be empty.
+     *
+     * @return   the removed element
+     */
+    int pop()
+    {
+        int result = values[0];
+        int key = keys[--size], value = values[size];
+        int i = 0, half = size >>> 1;
+        // sift down the last element from the root
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child])
+                child++;
+            if (key <= keys[child])
+                break;
+            keys[i] = keys[child];
+            values[i] = values[child];
+            i = child;
+        }
+        keys[i] = key;
+        values[i] = value;
+        return result;
+    }
+}
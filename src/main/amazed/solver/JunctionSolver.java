@@ -0,0 +1,146 @@
+package amazed.solver;
+
+import amazed.maze.JunctionGraph;
+import amazed.maze.Maze;
+import amazed.maze.Path;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <code>JunctionSolver</code> implements a solver for
+ * <code>Maze</code> objects that searches the junction graph of the
+ * maze instead of its cells.
+ * <p>
+ * The search is Dijkstra's algorithm over junctions, with corridors
+ * as edges weighted by their length; thus, the first goal expanded is
+ * reached by a shortest path, as with <code>AStarSolver</code>. Dead
+ * ends are pruned and corridors contracted before the search, when
+ * the junction graph is first built, so the search itself touches
+ * only the junctions. The path found is expanded back into a path of
+ * node identifiers through every cell of its corridors.
+ * <p>
+ * The search moves one animated player along the junctions it
+ * expands.
+ *
+ * @see Maze#junctionGraph()
+ */
+
+public class JunctionSolver
+    extends RecursiveTask<Path>
+    implements TimeBounded
+{
+    /**
+     * The maze being searched.
+     */
+    protected Maze maze;
+
+    private int explored;
+    private Deadline deadline = Deadline.NONE;
+    private boolean timedOut = false;
+
+    /**
+     * Creates a solver that searches in <code>maze</code> from the
+     * start node to a nearest goal.
+     *
+     * @param maze   the maze to be searched
+     */
+    public JunctionSolver(Maze maze)
+    {
+        this.maze = maze;
+    }
+
+    /**
+     * Searches for and returns a shortest path, as a sequence of node
+     * identifiers, that goes from the start node to a goal node in
+     * the maze. If such a path cannot be found (because there are no
+     * goals, or all goals are unreacheable), the method returns
+     * <code>null</code>.
+     *
+     * @return   the path of node identifiers from the start node to a
+     *           nearest goal node in the maze; <code>null</code> if such a
+     *           path cannot be found
+     */
+    @Override
+    public Path compute()
+    {
+        JunctionGraph junctions = maze.junctionGraph();
+        int size = junctions.size();
+        // junction --> length of the best path found from start, or -1
+        int[] distance = new int[size];
+        // junction --> edge entering it on the best path, or -1
+        int[] entering = new int[size];
+        // junction --> junction that edge leaves
+        int[] predecessor = new int[size];
+        boolean[] closed = new boolean[size];
+        Arrays.fill(distance, -1);
+        IntMinHeap open = new IntMinHeap(64);
+
+        int start = junctions.start();
+        int player = maze.newPlayer(maze.start());
+        distance[start] = 0;
+        entering[start] = -1;
+        open.push(start, 0);
+        while (!open.isEmpty()) {
+            if (deadline.isExpired()) {
+                timedOut = true;
+                return null;
+            }
+            int current = open.pop();
+            if (closed[current])
+                continue;                   // stale entry, expanded with a smaller key
+            closed[current] = true;
+            explored++;
+            maze.move(player, maze.graph().idOf(junctions.cell(current)));
+            if (junctions.isGoal(current))
+                return pathTo(junctions, entering, predecessor, current);
+            for (int e = junctions.edgeStart(current); e < junctions.edgeEnd(current); e++) {
+                int next = junctions.target(e);
+                int cost = distance[current] + junctions.weight(e);
+                if (distance[next] == -1 || cost < distance[next]) {
+                    distance[next] = cost;
+                    entering[next] = e;
+                    predecessor[next] = current;
+                    open.push(next, cost);
+                }
+            }
+        }
+        // all reachable junctions explored, no goal found
+        return null;
+    }
+
+    /**
+     * Returns the number of junctions expanded by the search so far.
+     *
+     * @return   the number of junctions expanded
+     */
+    @Override
+    public int explored()
+    {
+        return explored;
+    }
+
+    @Override
+    public void setDeadline(Deadline deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    // the path from the start node to junction `to', following entering edges
+    private static Path pathTo(JunctionGraph junctions, int[] entering, int[] predecessor, int to)
+    {
+        int count = 0;
+        for (int j = to; entering[j] != -1; j = predecessor[j])
+            count++;
+        int[] edges = new int[count];
+        for (int j = to, i = count - 1; entering[j] != -1; j = predecessor[j], i--)
+            edges[i] = entering[j];
+        return junctions.expand(edges, count);
+    }
+}
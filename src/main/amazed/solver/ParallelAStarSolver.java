@@ -0,0 +1,378 @@
+package amazed.solver;
+
+import amazed.maze.Graph;
+import amazed.maze.Maze;
+import amazed.maze.Path;
+
+import java.util.Arrays;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <code>ParallelAStarSolver</code> implements a solver for
+ * <code>Maze</code> objects using hash-distributed A* (HDA*) on the
+ * fork/join pool.
+ * <p>
+ * Nodes are partitioned among <em>owners</em>, as many as the
+ * parallelism of the pool, by hashing the square tile of
+ * <code>TILE</code>&times;<code>TILE</code> cells they belong to, so
+ * that most moves stay within one owner. Every owner has a private
+ * open list &mdash; a primitive binary heap ordered by
+ * <code>g + h</code> as in <code>AStarSolver</code> &mdash; and an
+ * inbox of nodes sent to it by other owners. An owner's open list is
+ * processed by at most one fork/join task at a time, which is forked
+ * when messages arrive and terminates when both its inbox and open
+ * list are empty.
+ * <p>
+ * The best known path length and predecessor of every node are packed
+ * in one atomic word and only ever improved by compare-and-set, so
+ * owners can relax edges into each other's nodes without locks. When a
+ * goal is expanded it becomes the incumbent if it is cheaper than the
+ * current one; nodes whose <code>g + h</code> is not smaller than the
+ * incumbent's cost are pruned. The search ends when no task is left,
+ * at which point every node that could lead to a cheaper goal has been
+ * expanded, so the incumbent is reached by a shortest path. Searches
+ * are not animated.
+ * <p>
+ * Instances of <code>ParallelAStarSolver</code> should be run by a
+ * <code>ForkJoinPool</code> object.
+ */
+
+public class ParallelAStarSolver
+    extends RecursiveTask<Path>
+    implements TimeBounded
+{
+    // side of the square tiles of nodes assigned to the same owner
+    private static final int TILE = 16;
+    // nodes expanded by a task before it yields to other tasks
+    private static final int BATCH = 256;
+    // no incumbent goal yet
+    private static final long NO_GOAL = Long.MAX_VALUE;
+
+    /**
+     * The maze being searched.
+     */
+    protected Maze maze;
+
+    private Graph graph;
+    private GoalDistance h;
+    // node index --> (1 + g) << 32 | (1 + predecessor); 0 if not reached
+    private AtomicLongArray best;
+    // node index --> 1 + g when expanded, 0 if never; each entry is
+    // only accessed by the owner of the node
+    private int[] expandedAt;
+    // cost << 32 | goal index of the best goal expanded so far
+    private final AtomicLong incumbent = new AtomicLong(NO_GOAL);
+    private Owner[] owners;
+    private int tilesPerRow;
+    private final AtomicLong expanded = new AtomicLong();
+    private Deadline deadline = Deadline.NONE;
+    private volatile boolean timedOut = false;
+
+    /**
+     * Creates a solver that searches in <code>maze</code> from the
+     * start node to a nearest goal.
+     *
+     * @param maze   the maze to be searched
+     */
+    public ParallelAStarSolver(Maze maze)
+    {
+        this.maze = maze;
+    }
+
+    /**
+     * Searches for and returns a shortest path, as a sequence of node
+     * identifiers, that goes from the start node to a goal node in
+     * the maze. If such a path cannot be found (because there are no
+     * goals, or all goals are unreacheable), the method returns
+     * <code>null</code>.
+     *
+     * @return   the path of node identifiers from the start node to a
+     *           nearest goal node in the maze; <code>null</code> if such a
+     *           path cannot be found
+     */
+    @Override
+    public Path compute()
+    {
+        graph = maze.graph();
+        h = new GoalDistance(graph);
+        int size = graph.size();
+        best = new AtomicLongArray(size);
+        expandedAt = new int[size];
+        tilesPerRow = (graph.cols() + TILE - 1) / TILE;
+        ForkJoinPool pool = getPool();
+        int nOwners = Math.max(1, pool == null ? 1 : pool.getParallelism());
+        owners = new Owner[nOwners];
+        for (int i = 0; i < nOwners; i++)
+            owners[i] = new Owner();
+
+        int start = graph.indexOf(maze.start());
+        best.set(start, pack(0, -1));
+        new Search(start).invoke();
+
+        // the incumbent, if any, may not be a nearest goal
+        if (timedOut)
+            return null;
+        long goal = incumbent.get();
+        if (goal == NO_GOAL)
+            return null;
+        return pathTo((int) goal);
+    }
+
+    /**
+     * Returns the number of node expansions performed by the search so
+     * far, counting a node again if it is expanded by a shorter path.
+     *
+     * @return   the number of expansions
+     */
+    @Override
+    public int explored()
+    {
+        return (int) expanded.get();
+    }
+
+    @Override
+    public void setDeadline(Deadline deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    private static long pack(int g, int predecessor)
+    {
+        return ((long) (g + 1) << 32) | ((predecessor + 1) & 0xffffffffL);
+    }
+
+    private static int g(long entry)
+    {
+        return (int) (entry >>> 32) - 1;
+    }
+
+    private static int predecessor(long entry)
+    {
+        return (int) entry - 1;
+    }
+
+    // index in owners of the owner of `node'
+    private int ownerOf(int node)
+    {
+        int tile = (graph.row(node) / TILE) * tilesPerRow + graph.col(node) / TILE;
+        // scramble tile numbers so that neighboring tiles have different owners
+        int hash = tile * 0x9E3779B9;
+        return (hash >>> 1) % owners.length;
+    }
+
+    private int cost()
+    {
+        long goal = incumbent.get();
+        return goal == NO_GOAL ? Integer.MAX_VALUE : (int) (goal >>> 32);
+    }
+
+    // the path from the start node to node index `to', following best
+    private Path pathTo(int to)
+    {
+        int length = 0;
+        for (int node = to; node != -1; node = predecessor(best.get(node)))
+            length++;
+        Path.Builder path = new Path.Builder(length);
+        for (int node = to, i = length - 1; node != -1; node = predecessor(best.get(node)), i--)
+            path.set(i, graph.idOf(node));
+        return path.build();
+    }
+
+    /**
+     * A partition of the nodes, with its own open list and inbox.
+     */
+    private class Owner
+    {
+        // accessed only by the task currently draining this owner
+        private final IntMinHeap open = new IntMinHeap(64);
+        // nodes sent by other owners, guarded by `this'
+        private int[] inbox = new int[64];
+        private int inboxSize;
+        // a Drain task for this owner is running or about to run
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        synchronized void send(int[] nodes, int count)
+        {
+            if (inboxSize + count > inbox.length)
+                inbox = Arrays.copyOf(inbox, Math.max(2 * inbox.length, inboxSize + count));
+            System.arraycopy(nodes, 0, inbox, inboxSize, count);
+            inboxSize += count;
+        }
+
+        synchronized boolean hasMail()
+        {
+            return inboxSize > 0;
+        }
+
+        // move all received nodes to the open list
+        void receive()
+        {
+            int[] received;
+            int count;
+            synchronized (this) {
+                if (inboxSize == 0)
+                    return;
+                received = Arrays.copyOf(inbox, inboxSize);
+                count = inboxSize;
+                inboxSize = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                int node = received[i];
+                open.push(node, g(best.get(node)) + h.estimate(node));
+            }
+        }
+    }
+
+    /**
+     * Root of all <code>Drain</code> tasks: completes when every owner
+     * is idle.
+     */
+    private class Search
+        extends CountedCompleter<Void>
+    {
+        private final int start;
+
+        Search(int start)
+        {
+            this.start = start;
+        }
+
+        @Override
+        public void compute()
+        {
+            Owner owner = owners[ownerOf(start)];
+            owner.open.push(start, h.estimate(start));
+            owner.scheduled.set(true);
+            addToPendingCount(1);
+            new Drain(this, owner).fork();
+            tryComplete();
+        }
+
+        // make sure `owner' will look at its inbox
+        void wake(Owner owner)
+        {
+            if (owner.scheduled.compareAndSet(false, true)) {
+                addToPendingCount(1);
+                new Drain(this, owner).fork();
+            }
+        }
+    }
+
+    /**
+     * Expands nodes from the open list of one owner.
+     */
+    private class Drain
+        extends CountedCompleter<Void>
+    {
+        private final Search search;
+        private final Owner owner;
+
+        Drain(Search search, Owner owner)
+        {
+            super(search);
+            this.search = search;
+            this.owner = owner;
+        }
+
+        @Override
+        public void compute()
+        {
+            int[] neighbors = new int[Graph.MAX_DEGREE];
+            int[][] outgoing = new int[owners.length][];
+            int[] outgoingSize = new int[owners.length];
+            IntMinHeap open = owner.open;
+            while (true) {
+                owner.receive();
+                int budget = BATCH;
+                while (!open.isEmpty() && budget > 0) {
+                    if (deadline.isExpired()) {
+                        // out of time: drop the nodes of this owner,
+                        // and those it receives later
+                        timedOut = true;
+                        open.clear();
+                        break;
+                    }
+                    int f = open.peekKey();
+                    if (f >= cost()) {
+                        // no node left here can lead to a cheaper goal
+                        open.clear();
+                        break;
+                    }
+                    int node = open.pop();
+                    int g = g(best.get(node));
+                    if (g + h.estimate(node) != f || expandedAt[node] == g + 1)
+                        continue;           // stale entry
+                    expandedAt[node] = g + 1;
+                    expanded.incrementAndGet();
+                    budget--;
+                    if (graph.isGoal(node)) {
+                        long candidate = ((long) g << 32) | node;
+                        incumbent.accumulateAndGet(candidate, Math::min);
+                        continue;
+                    }
+                    int nNeighbors = graph.neighbors(node, neighbors);
+                    for (int n = 0; n < nNeighbors; n++) {
+                        int nb = neighbors[n];
+                        if (relax(nb, node, g + 1) && g + 1 + h.estimate(nb) < cost()) {
+                            int i = ownerOf(nb);
+                            if (owners[i] == owner)
+                                open.push(nb, g + 1 + h.estimate(nb));
+                            else {
+                                if (outgoing[i] == null)
+                                    outgoing[i] = new int[BATCH];
+                                if (outgoingSize[i] == outgoing[i].length)
+                                    outgoing[i] = Arrays.copyOf(outgoing[i], 2 * outgoingSize[i]);
+                                outgoing[i][outgoingSize[i]++] = nb;
+                            }
+                        }
+                    }
+                }
+                for (int i = 0; i < owners.length; i++) {
+                    if (outgoingSize[i] > 0) {
+                        owners[i].send(outgoing[i], outgoingSize[i]);
+                        outgoingSize[i] = 0;
+                        search.wake(owners[i]);
+                    }
+                }
+                if (budget == 0 && !open.isEmpty()) {
+                    // yield to other owners, and continue in a new task
+                    search.addToPendingCount(1);
+                    new Drain(search, owner).fork();
+                    break;
+                }
+                if (open.isEmpty() && !owner.hasMail()) {
+                    owner.scheduled.set(false);
+                    // a message may have arrived after the check above
+                    if (!owner.hasMail() || !owner.scheduled.compareAndSet(false, true))
+                        break;
+                }
+            }
+            tryComplete();
+        }
+
+        // lower the best known path length of `node' to `g', via `from'
+        private boolean relax(int node, int from, int g)
+        {
+            long entry = best.get(node);
+            long improved = pack(g, from);
+            while (entry == 0 || g < g(entry)) {
+                long witness = best.compareAndExchange(node, entry, improved);
+                if (witness == entry)
+                    return true;
+                entry = witness;
+            }
+            return false;
+        }
+    }
+}
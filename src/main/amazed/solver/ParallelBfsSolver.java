@@ -0,0 +1,308 @@
+package amazed.solver;
+
+import amazed.maze.Graph;
+import amazed.maze.Maze;
+import amazed.maze.Path;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>ParallelBfsSolver</code> implements a solver for
+ * <code>Maze</code> objects using a level-synchronous,
+ * direction-optimizing parallel breadth-first search.
+ * <p>
+ * The search proceeds one level at a time: all nodes at distance
+ * <code>d</code> from the start node are discovered before any node at
+ * distance <code>d + 1</code>. Each level is expanded in parallel by
+ * fork/join tasks, in one of two directions:
+ * <ul>
+ * <li><em>top-down</em>: every node in the frontier claims its
+ * unvisited neighbors, which is cheap when the frontier is small;</li>
+ * <li><em>bottom-up</em>: every unvisited node looks for a neighbor in
+ * the frontier and stops at the first one, which is cheap when the
+ * frontier is large compared to the unexplored part of the maze.</li>
+ * </ul>
+ * The direction is chosen before each level by comparing the number
+ * of edges leaving the frontier with the number of edges leaving
+ * unvisited nodes, following Beamer et al.'s heuristic.
+ * <p>
+ * The search stops at the first level that contains a goal; since
+ * levels are explored in order of distance, the path returned is a
+ * shortest path from the start node to a nearest goal. Among goals at
+ * the same distance, the one with the smallest node index is chosen,
+ * so the result is deterministic. Searches are not animated.
+ * <p>
+ * Instances of <code>ParallelBfsSolver</code> should be run by a
+ * <code>ForkJoinPool</code> object.
+ */
+
+public class ParallelBfsSolver
+    extends RecursiveTask<Path>
+    implements TimeBounded
+{
+    // switch to bottom-up when frontier edges exceed unexplored edges / ALPHA
+    private static final int ALPHA = 14;
+    // switch back to top-down when the frontier is smaller than nodes / BETA
+    private static final int BETA = 24;
+    // frontier nodes processed sequentially by a top-down task
+    private static final int TOP_DOWN_GRAIN = 256;
+    // nodes scanned sequentially by a bottom-up task
+    private static final int BOTTOM_UP_GRAIN = 4096;
+
+    /**
+     * The maze being searched.
+     */
+    protected Maze maze;
+
+    private Graph graph;
+    private AtomicBitSet visited;
+    // node index --> node index it was discovered from, -1 for the start node
+    private int[] parent;
+    private int[] frontier;
+    private int frontierSize;
+    private long[] inFrontier;
+    private int[] next;
+    private final AtomicInteger nextSize = new AtomicInteger();
+    // sum of the degrees of the nodes in next
+    private final AtomicLong nextEdges = new AtomicLong();
+    // smallest goal node index in next, or Integer.MAX_VALUE
+    private final AtomicInteger goal = new AtomicInteger();
+    private Deadline deadline = Deadline.NONE;
+    private boolean timedOut = false;
+
+    /**
+     * Creates a solver that searches in <code>maze</code> from the
+     * start node to a nearest goal.
+     *
+     * @param maze   the maze to be searched
+     */
+    public ParallelBfsSolver(Maze maze)
+    {
+        this.maze = maze;
+    }
+
+    /**
+     * Searches for and returns a shortest path, as a sequence of node
+     * identifiers, that goes from the start node to a goal node in
+     * the maze. If such a path cannot be found (because there are no
+     * goals, or all goals are unreacheable), the method returns
+     * <code>null</code>.
+     *
+     * @return   the path of node identifiers from the start node to a
+     *           nearest goal node in the maze; <code>null</code> if such a
+     *           path cannot be found
+     */
+    @Override
+    public Path compute()
+    {
+        graph = maze.graph();
+        int size = graph.size();
+        visited = new AtomicBitSet(size);
+        parent = new int[size];
+        frontier = new int[size];
+        next = new int[size];
+
+        int start = graph.indexOf(maze.start());
+        visited.claim(start);
+        parent[start] = -1;
+        if (graph.isGoal(start))
+            return pathTo(start);
+        frontier[0] = start;
+        frontierSize = 1;
+        long frontierEdges = graph.degree(start);
+        long unexploredEdges = graph.edges() - frontierEdges;
+        boolean bottomUp = false;
+
+        while (frontierSize > 0) {
+            // levels are not interrupted: stop between two levels
+            if (deadline.isExpired()) {
+                timedOut = true;
+                return null;
+            }
+            // a walled start node is nobody's neighbor: leave it top-down
+            if (!bottomUp && frontierEdges > unexploredEdges / ALPHA && graph.isAccessible(frontier[0]))
+                bottomUp = true;
+            else if (bottomUp && frontierSize < size / BETA)
+                bottomUp = false;
+
+            nextSize.set(0);
+            nextEdges.set(0);
+            goal.set(Integer.MAX_VALUE);
+            if (bottomUp) {
+                markFrontier();
+                invokeAll(new BottomUp(0, size));
+            } else
+                invokeAll(new TopDown(0, frontierSize));
+
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            frontierSize = nextSize.get();
+            frontierEdges = nextEdges.get();
+            unexploredEdges -= frontierEdges;
+            if (goal.get() != Integer.MAX_VALUE)
+                return pathTo(goal.get());
+        }
+        // all reachable nodes explored, no goal found
+        return null;
+    }
+
+    /**
+     * Returns the number of nodes discovered by the search so far,
+     * counting the start node.
+     *
+     * @return   the number of nodes explored
+     */
+    @Override
+    public int explored()
+    {
+        return visited == null ? 0 : visited.cardinality();
+    }
+
+    @Override
+    public void setDeadline(Deadline deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    // set inFrontier to the bitset of the nodes in frontier
+    private void markFrontier()
+    {
+        if (inFrontier == null)
+            inFrontier = new long[(graph.size() + 63) >>> 6];
+        else
+            Arrays.fill(inFrontier, 0L);
+        for (int i = 0; i < frontierSize; i++) {
+            int node = frontier[i];
+            inFrontier[node >>> 6] |= 1L << node;
+        }
+    }
+
+    // add the `count' nodes in `discovered' to the next frontier
+    private void publish(int[] discovered, int count, long edges, int minGoal)
+    {
+        if (count == 0)
+            return;
+        int at = nextSize.getAndAdd(count);
+        System.arraycopy(discovered, 0, next, at, count);
+        nextEdges.addAndGet(edges);
+        if (minGoal != Integer.MAX_VALUE)
+            goal.accumulateAndGet(minGoal, Math::min);
+    }
+
+    // the path from the start node to node index `to', following parent
+    private Path pathTo(int to)
+    {
+        int length = 0;
+        for (int node = to; node != -1; node = parent[node])
+            length++;
+        Path.Builder path = new Path.Builder(length);
+        for (int node = to, i = length - 1; node != -1; node = parent[node], i--)
+            path.set(i, graph.idOf(node));
+        return path.build();
+    }
+
+    /**
+     * Expands frontier nodes in <code>[from, to)</code> by claiming
+     * their unvisited neighbors.
+     */
+    private class TopDown
+        extends RecursiveAction
+    {
+        private final int from, to;
+
+        TopDown(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > TOP_DOWN_GRAIN) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TopDown(from, middle), new TopDown(middle, to));
+                return;
+            }
+            int[] neighbors = new int[Graph.MAX_DEGREE];
+            int[] discovered = new int[(to - from) * Graph.MAX_DEGREE];
+            int count = 0, minGoal = Integer.MAX_VALUE;
+            long edges = 0;
+            for (int i = from; i < to; i++) {
+                int node = frontier[i];
+                int nNeighbors = graph.neighbors(node, neighbors);
+                for (int n = 0; n < nNeighbors; n++) {
+                    int nb = neighbors[n];
+                    if (visited.claim(nb)) {
+                        parent[nb] = node;
+                        discovered[count++] = nb;
+                        edges += graph.degree(nb);
+                        if (graph.isGoal(nb))
+                            minGoal = Math.min(minGoal, nb);
+                    }
+                }
+            }
+            publish(discovered, count, edges, minGoal);
+        }
+    }
+
+    /**
+     * Scans nodes in <code>[from, to)</code> and adds every unvisited
+     * one that has a neighbor in the frontier.
+     */
+    private class BottomUp
+        extends RecursiveAction
+    {
+        private final int from, to;
+
+        BottomUp(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > BOTTOM_UP_GRAIN) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BottomUp(from, middle), new BottomUp(middle, to));
+                return;
+            }
+            int[] neighbors = new int[Graph.MAX_DEGREE];
+            int[] discovered = new int[to - from];
+            int count = 0, minGoal = Integer.MAX_VALUE;
+            long edges = 0;
+            for (int node = from; node < to; node++) {
+                if (visited.contains(node) || !graph.isAccessible(node))
+                    continue;
+                int nNeighbors = graph.neighbors(node, neighbors);
+                for (int n = 0; n < nNeighbors; n++) {
+                    int nb = neighbors[n];
+                    if ((inFrontier[nb >>> 6] & (1L << nb)) != 0) {
+                        // nodes in [from, to) are only claimed by this task
+                        visited.claim(node);
+                        parent[node] = nb;
+                        discovered[count++] = node;
+                        edges += nNeighbors;
+                        if (graph.isGoal(node))
+                            minGoal = Math.min(minGoal, node);
+                        break;
+                    }
+                }
+            }
+            publish(discovered, count, edges, minGoal);
+        }
+    }
+}
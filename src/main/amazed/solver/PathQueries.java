@@ -0,0 +1,437 @@
+package amazed.solver;
+
+import amazed.maze.Components;
+import amazed.maze.Graph;
+import amazed.maze.Maze;
+import amazed.maze.Path;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <code>PathQueries</code> answers point-to-point queries on one
+ * loaded maze: shortest paths from any start cell to a goal cell, or
+ * to the nearest of a set of goal cells, regardless of the start node
+ * and the goal tiles of the maze.
+ * <p>
+ * Every query runs an A* search on the compiled graph of the maze,
+ * with the Manhattan distance to the nearest goal cell as heuristic
+ * when there are at most <code>DIRECT_GOALS</code> of them, and no
+ * heuristic otherwise. Goal cells in another component than the start
+ * cell are dropped before searching, so that a query with no
+ * reachable goal is answered without search; the components of the
+ * maze are labelled when the object is created.
+ * <p>
+ * Queries allocate no search state: every thread that answers queries
+ * keeps scratch arrays of three <code>int</code> per cell, created on
+ * its first query and reused by the next ones. Entries are stamped
+ * with the number of the query that wrote them, so that reusing the
+ * arrays does not clear them. Any number of threads can answer queries
+ * at the same time; {@link #solveAll(Query[])} answers many queries in
+ * parallel in the current fork/join pool.
+ */
+
+public final class PathQueries
+{
+    // up to this many goal cells, the heuristic is the distance to the nearest
+    private static final int DIRECT_GOALS = 8;
+    // queries answered sequentially by a task of solveAll
+    private static final int GRAIN = 8;
+
+    private final Graph graph;
+    private final Components components;
+    private final ThreadLocal<Scratch> scratch;
+    private final LongAdder answered = new LongAdder();
+    private final LongAdder expanded = new LongAdder();
+
+    /**
+     * Creates an object answering queries on <code>maze</code>,
+     * labelling its components if not done yet, in the fork/join pool
+     * of the calling task or else the common pool.
+     *
+     * @param maze   the maze to be queried
+     */
+    public PathQueries(Maze maze)
+    {
+        graph = maze.graph();
+        components = maze.components();
+        scratch = ThreadLocal.withInitial(() -> new Scratch(graph.size()));
+    }
+
+    /**
+     * <code>Query</code> is a start cell and a set of goal cells, by
+     * row and column.
+     */
+    public static final class Query
+    {
+        private final int startRow, startCol;
+        private final int[] goalRows, goalCols;
+
+        /**
+         * Creates a query for a shortest path between two cells.
+         *
+         * @param startRow   the row of the start cell
+         * @param startCol   the column of the start cell
+         * @param goalRow    the row of the goal cell
+         * @param goalCol    the column of the goal cell
+         */
+        public Query(int startRow, int startCol, int goalRow, int goalCol)
+        {
+            this(startRow, startCol, new int[] { goalRow }, new int[] { goalCol });
+        }
+
+        /**
+         * Creates a query for a shortest path from a cell to the
+         * nearest of a set of cells.
+         *
+         * @param startRow   the row of the start cell
+         * @param startCol   the column of the start cell
+         * @param goalRows   the rows of the goal cells
+         * @param goalCols   the columns of the goal cells, in the same
+         *                   order
+         * @throws IllegalArgumentException if the arrays of rows and
+         *                                  columns differ in length
+         */
+        public Query(int startRow, int startCol, int[] goalRows, int[] goalCols)
+        {
+            if (goalRows.length != goalCols.length)
+                throw new IllegalArgumentException("goal rows and columns differ in number");
+            this.startRow = startRow;
+            this.startCol = startCol;
+            this.goalRows = goalRows.clone();
+            this.goalCols = goalCols.clone();
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder goals = new StringBuilder();
+            for (int i = 0; i < goalRows.length; i++)
+                goals.append(i == 0 ? "" : ", ").append("(" + goalRows[i] + "," + goalCols[i] + ")");
+            return "(" + startRow + "," + startCol + ") -> {" + goals + "}";
+        }
+    }
+
+    /**
+     * Returns a shortest path from the start cell of
+     * <code>query</code> to one of its goal cells.
+     *
+     * @param query   a query on this maze
+     * @return        the path of node identifiers from the start cell
+     *                to a nearest goal cell; <code>null</code> if no goal
+     *                cell can be reached, for example because the start
+     *                cell is a wall
+     * @throws IllegalArgumentException if a cell of <code>query</code>
+     *                                  is outside the maze
+     */
+    public Path solve(Query query)
+    {
+        int start = index(query.startRow, query.startCol);
+        Scratch s = scratch.get();
+        s.begin();
+        int component = components.component(start);
+        int nGoals = 0;
+        for (int i = 0; i < query.goalRows.length; i++) {
+            int goal = index(query.goalRows[i], query.goalCols[i]);
+            if (component != -1 && components.component(goal) == component)
+                nGoals = s.addGoal(goal, nGoals);
+        }
+        answered.increment();
+        if (nGoals == 0)
+            return null;
+        Arrays.sort(s.goals, 0, nGoals);
+        s.nGoals = nGoals;
+        return search(s, start);
+    }
+
+    /**
+     * Answers all queries of <code>queries</code> in parallel, in the
+     * fork/join pool of the calling task or else the common pool.
+     *
+     * @param queries   queries on this maze
+     * @return          the paths found and the throughput of the
+     *                  queries
+     * @throws IllegalArgumentException if a cell of a query is outside
+     *                                  the maze
+     */
+    public Results solveAll(Query[] queries)
+    {
+        Path[] paths = new Path[queries.length];
+        long expandedBefore = expanded.sum();
+        long start = System.nanoTime();
+        new Answer(queries, paths, 0, queries.length).invoke();
+        return new Results(paths, System.nanoTime() - start, expanded.sum() - expandedBefore);
+    }
+
+    /**
+     * Returns the number of queries answered so far by this object.
+     *
+     * @return   the number of queries answered
+     */
+    public long answered()
+    {
+        return answered.sum();
+    }
+
+    /**
+     * Returns the number of nodes expanded so far by the searches of
+     * this object.
+     *
+     * @return   the number of nodes expanded
+     */
+    public long expanded()
+    {
+        return expanded.sum();
+    }
+
+    /**
+     * <code>Results</code> are the answers to a set of queries, with
+     * the time taken to answer them all.
+     */
+    public static final class Results
+    {
+        private final Path[] paths;
+        private final long elapsed;
+        private final long expanded;
+
+        private Results(Path[] paths, long elapsed, long expanded)
+        {
+            this.paths = paths;
+            this.elapsed = elapsed;
+            this.expanded = expanded;
+        }
+
+        /**
+         * Returns the path found for query <code>i</code>.
+         *
+         * @param i   the position of a query in the array of queries
+         * @return    the path found, or <code>null</code> if none
+         */
+        public Path path(int i)
+        {
+            return paths[i];
+        }
+
+        /**
+         * Returns the number of queries answered.
+         *
+         * @return   the number of queries
+         */
+        public int count()
+        {
+            return paths.length;
+        }
+
+        /**
+         * Returns the time taken to answer all queries.
+         *
+         * @param unit   the unit of the result
+         * @return       the wall-clock time, in <code>unit</code>
+         */
+        public long elapsed(TimeUnit unit)
+        {
+            return unit.convert(elapsed, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns the throughput of the queries.
+         *
+         * @return   the number of queries answered per second
+         */
+        public double queriesPerSecond()
+        {
+            return elapsed == 0 ? 0 : paths.length / (elapsed / 1e9);
+        }
+
+        @Override
+        public String toString()
+        {
+            int found = 0;
+            for (Path path: paths) {
+                if (path != null)
+                    found++;
+            }
+            return String.format("%d queries, %d paths found, %d nodes expanded in %.1f ms (%.0f queries/s)",
+                                 paths.length, found, expanded, elapsed / 1e6, queriesPerSecond());
+        }
+    }
+
+    // node index of the cell at `row', `col'
+    private int index(int row, int col)
+    {
+        if (row < 0 || row >= graph.rows() || col < 0 || col >= graph.cols())
+            throw new IllegalArgumentException("cell (" + row + "," + col + ") is outside the maze");
+        return row * graph.cols() + col;
+    }
+
+    // A* from node index `start' to the goals in `s'
+    private Path search(Scratch s, int start)
+    {
+        IntMinHeap open = s.open;
+        open.clear();
+        s.reach(start, 0, -1);
+        open.push(start, heuristic(s, start));
+        int count = 0;
+        try {
+            while (!open.isEmpty()) {
+                int current = open.pop();
+                if (s.isClosed(current))
+                    continue;               // stale entry, expanded with a smaller key
+                s.close(current);
+                count++;
+                if (s.isGoal(current))
+                    return pathTo(s, current);
+                int g = s.g[current] + 1;
+                int nNeighbors = graph.neighbors(current, s.neighbors);
+                for (int n = 0; n < nNeighbors; n++) {
+                    int nb = s.neighbors[n];
+                    if (!s.isReached(nb) || g < s.g[nb]) {
+                        s.reach(nb, g, current);
+                        open.push(nb, g + heuristic(s, nb));
+                    }
+                }
+            }
+            // unreachable: goals in the same component are always found
+            return null;
+        } finally {
+            expanded.add(count);
+        }
+    }
+
+    // Manhattan distance from node index `index' to the nearest goal in
+    // `s', or 0 if there are too many goals
+    private int heuristic(Scratch s, int index)
+    {
+        if (s.nGoals > DIRECT_GOALS)
+            return 0;
+        int row = graph.row(index), col = graph.col(index);
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i < s.nGoals; i++) {
+            int goal = s.goals[i];
+            best = Math.min(best, Math.abs(graph.row(goal) - row) + Math.abs(graph.col(goal) - col));
+        }
+        return best;
+    }
+
+    // the path from the start node to node index `to', following predecessors
+    private Path pathTo(Scratch s, int to)
+    {
+        Path.Builder path = new Path.Builder(s.g[to] + 1);
+        for (int node = to, i = s.g[to]; node != -1; node = s.predecessor[node], i--)
+            path.set(i, graph.idOf(node));
+        return path.build();
+    }
+
+    /**
+     * Search state of one thread, reused by all its queries.
+     */
+    private static class Scratch
+    {
+        // node index --> 2 * query if reached by the current query,
+        // 2 * query + 1 if also expanded; anything smaller is stale
+        private final int[] state;
+        private final int[] g;
+        private final int[] predecessor;
+        private final IntMinHeap open = new IntMinHeap(64);
+        private final int[] neighbors = new int[Graph.MAX_DEGREE];
+        // goal indices of the current query, sorted
+        private int[] goals = new int[DIRECT_GOALS];
+        private int nGoals;
+        private int query = 0;
+
+        Scratch(int size)
+        {
+            state = new int[size];
+            g = new int[size];
+            predecessor = new int[size];
+        }
+
+        // start a new query
+        void begin()
+        {
+            if (query == Integer.MAX_VALUE / 2) {
+                // stamps would wrap around: clear them once
+                Arrays.fill(state, 0);
+                query = 0;
+            }
+            query++;
+            nGoals = 0;
+        }
+
+        // add goal `goal' after the first `count' goals; return the new count
+        int addGoal(int goal, int count)
+        {
+            if (count == goals.length)
+                goals = Arrays.copyOf(goals, 2 * count);
+            goals[count] = goal;
+            return count + 1;
+        }
+
+        boolean isGoal(int index)
+        {
+            if (nGoals <= DIRECT_GOALS) {
+                for (int i = 0; i < nGoals; i++) {
+                    if (goals[i] == index)
+                        return true;
+                }
+                return false;
+            }
+            return Arrays.binarySearch(goals, 0, nGoals, index) >= 0;
+        }
+
+        boolean isReached(int index)
+        {
+            return state[index] >= 2 * query;
+        }
+
+        boolean isClosed(int index)
+        {
+            return state[index] == 2 * query + 1;
+        }
+
+        void reach(int index, int distance, int from)
+        {
+            state[index] = 2 * query;
+            g[index] = distance;
+            predecessor[index] = from;
+        }
+
+        void close(int index)
+        {
+            state[index] = 2 * query + 1;
+        }
+    }
+
+    /**
+     * Answers the queries in <code>[from, to)</code>.
+     */
+    private class Answer
+        extends RecursiveAction
+    {
+        private final Query[] queries;
+        private final Path[] paths;
+        private final int from, to;
+
+        Answer(Query[] queries, Path[] paths, int from, int to)
+        {
+            this.queries = queries;
+            this.paths = paths;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > GRAIN) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Answer(queries, paths, from, middle), new Answer(queries, paths, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++)
+                paths[i] = solve(queries[i]);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package amazed.solver;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import amazed.maze.Graph;
+import amazed.maze.Maze;
+import amazed.maze.Path;
+
+/**
+ * <code>SearchContext</code> holds the state shared by all tasks of
+ * one parallel search: the set of claimed nodes, the predecessor of
+ * every claimed node, the slot where the first path found is
+ * published, and the deadline of the search.
+ * <p>
+ * Predecessors are stored in a single array indexed by node index.
+ * Since every node is claimed by exactly one task, each entry is
+ * written exactly once, by the claiming task, right after claiming
+ * it; so forking a task does not copy any search state. Entries are
+ * written with release semantics and read with acquire semantics, so
+ * that any task that can see a node can also see its predecessor.
+ * <p>
+ * A new context is created for every invocation of a root solver, so
+ * that any number of searches, on the same maze or on different ones,
+ * can run concurrently or one after the other in the same JVM without
+ * observing each other.
+ */
+
+class SearchContext
+{
+    private static final VarHandle PREDECESSOR = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final AtomicBitSet visited;
+    // node index --> node index it was claimed from, -1 if none
+    private final int[] predecessor;
+    private final AtomicReference<Path> result = new AtomicReference<>();
+    private volatile boolean found = false;
+    private final Deadline deadline;
+    // some task stopped with nodes left to explore
+    private volatile boolean abandoned = false;
+
+    /**
+     * Creates a context for a search of <code>maze</code>, with no
+     * node claimed and no result.
+     *
+     * @param maze   the maze to be searched
+     */
+    SearchContext(Maze maze)
+    {
+        this(maze, Deadline.NONE);
+    }
+
+    /**
+     * Creates a context for a search of <code>maze</code> bounded by
+     * <code>deadline</code>, with no node claimed and no result.
+     *
+     * @param maze       the maze to be searched
+     * @param deadline   the deadline of the search
+     */
+    SearchContext(Maze maze, Deadline deadline)
+    {
+        this.deadline = deadline;
+        visited = new AtomicBitSet(maze.graph().size());
+        predecessor = new int[maze.graph().size()];
+        Arrays.fill(predecessor, -1);
+    }
+
+    /**
+     * Returns the set of node indices claimed so far by any task.
+     *
+     * @return   the shared set of claimed nodes
+     */
+    AtomicBitSet visited()
+    {
+        return visited;
+    }
+
+    /**
+     * Records that node <code>node</code> has been claimed from its
+     * neighbor <code>from</code>. Only the task that claimed
+     * <code>node</code> may call this method.
+     *
+     * @param node   the index of a node just claimed
+     * @param from   the index of the node being visited when
+     *               <code>node</code> was claimed
+     */
+    void setPredecessor(int node, int from)
+    {
+        PREDECESSOR.setRelease(predecessor, node, from);
+    }
+
+    /**
+     * Returns the index of the node from which <code>node</code> has
+     * been claimed, or <code>-1</code> for the start node and for
+     * nodes whose predecessor has not been recorded.
+     *
+     * @param node   a node index
+     * @return       the predecessor of <code>node</code>
+     */
+    int predecessor(int node)
+    {
+        return (int) PREDECESSOR.getAcquire(predecessor, node);
+    }
+
+    /**
+     * Returns the path of node identifiers from the start node to node
+     * index <code>to</code>, following the predecessors recorded so
+     * far.
+     *
+     * @param graph   the graph of the maze searched
+     * @param to      the index of a claimed node
+     * @return        the path from the node with no predecessor to
+     *                <code>to</code>
+     */
+    Path pathTo(Graph graph, int to)
+    {
+        int length = 0;
+        for (int node = to; node != -1; node = predecessor(node))
+            length++;
+        Path.Builder path = new Path.Builder(length);
+        for (int node = to, i = length - 1; node != -1; node = predecessor(node), i--)
+            path.set(i, graph.idOf(node));
+        return path.build();
+    }
+
+    /**
+     * Publishes a path to a goal, unless another one has already been
+     * published. In either case, all tasks of the search will observe
+     * <code>isFound() == true</code> afterwards.
+     *
+     * @param path   a path from the start node to a goal
+     * @return       <code>true</code> if <code>path</code> is the
+     *               result of the search; <code>false</code> if another
+     *               path was published first
+     */
+    boolean publish(Path path)
+    {
+        boolean first = result.compareAndSet(null, path);
+        found = true;
+        return first;
+    }
+
+    /**
+     * Tests whether any task has found a goal, in which case all tasks
+     * should stop searching.
+     *
+     * @return   <code>true</code> if a path has been published
+     */
+    boolean isFound()
+    {
+        return found;
+    }
+
+    /**
+     * Tests whether all tasks should stop searching, because a goal
+     * has been found or the deadline has expired.
+     *
+     * @return   <code>true</code> if the search is over
+     */
+    boolean isStopped()
+    {
+        return found || deadline.isExpired();
+    }
+
+    /**
+     * Records that a task stopped, or dropped tasks it forked, before
+     * exploring all the nodes it was responsible for.
+     */
+    void abandon()
+    {
+        abandoned = true;
+    }
+
+    /**
+     * Tests whether the search ended without a result because its
+     * deadline expired while nodes were left to explore.
+     *
+     * @return   <code>true</code> if the search timed out
+     */
+    boolean isTimedOut()
+    {
+        return abandoned && result() == null;
+    }
+
+    /**
+     * Returns the first path published, or <code>null</code> if no
+     * path has been published.
+     *
+     * @return   the result of the search so far
+     */
+    Path result()
+    {
+        return result.get();
+    }
+}
@@ -1,17 +1,16 @@
 package amazed.solver;
 
+import amazed.maze.Graph;
 import amazed.maze.Maze;
+import amazed.maze.Path;
 
 import java.util.concurrent.RecursiveTask;
 
-import java.util.List;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Stack;
-import java.util.Collections;
 
 /**
  * <code>SequentialSolver</code> implements a solver for
@@ -19,9 +18,9 @@ import java.util.Collections;
  * <p>
  * Even though <code>SequentialSolver</code> is implemented as a
  * <code>RecursiveTask</code>, it is purely sequential. Method
- * <code>compute</code> returns a solution consisting of a list of
- * node identifiers in the maze that lead from the start node to a
- * goal.
+ * <code>compute</code> returns a solution consisting of a
+ * <code>Path</code> of node identifiers in the maze that lead from the
+ * start node to a goal.
  * <p>
  * Depth-first search is implemented using a stack of
  * <code>frontier</code> nodes &mdash; giving the nodes to be explored
@@ -36,7 +35,8 @@ import java.util.Collections;
  */
 
 public class SequentialSolver
-    extends RecursiveTask<List<Integer>>
+    extends RecursiveTask<Path>
+    implements TimeBounded
 {
     /**
      * Creates a solver that searches in <code>maze</code> from the
@@ -97,25 +97,35 @@ public class SequentialSolver
      * starts.
      */
     protected int start;
+    /**
+     * Scratch buffer receiving the neighbors of the node being
+     * visited, so that exploring a node does not allocate.
+     */
+    protected int[] neighbors = new int[Graph.MAX_DEGREE];
+    /**
+     * The deadline of the search.
+     */
+    protected Deadline deadline = Deadline.NONE;
+    private boolean timedOut = false;
 
     /**
-     * Searches for and returns the path, as a list of node
+     * Searches for and returns the path, as a sequence of node
      * identifiers, that goes from the start node to a goal node in
      * the maze. If such a path cannot be found (because there are no
      * goals, or all goals are unreacheable), the method returns
      * <code>null</code>.
      *
-     * @return   the list of node identifiers from the start node to a
+     * @return   the path of node identifiers from the start node to a
      *           goal node in the maze; <code>null</code> if such a path cannot
      *           be found
      */
     @Override
-    public List<Integer> compute()
+    public Path compute()
     {
         return depthFirstSearch();
     }
 
-    private List<Integer> depthFirstSearch()
+    private Path depthFirstSearch()
     {
         // one player active on the maze at start
         int player = maze.newPlayer(start);
@@ -123,6 +133,11 @@ public class SequentialSolver
         frontier.push(start);
         // as long as not all nodes have been processed
         while (!frontier.empty()) {
+            // stop, leaving the rest unexplored, if out of time
+            if (deadline.isExpired()) {
+                timedOut = true;
+                return null;
+            }
             // get the new node to process
             int current = frontier.pop();
             // if current node has a goal
@@ -139,7 +154,9 @@ public class SequentialSolver
                 // mark node as visited
                 visited.add(current);
                 // for every node nb adjacent to current
-                for (int nb: maze.neighbors(current)) {
+                int nNeighbors = maze.neighbors(current, neighbors);
+                for (int i = 0; i < nNeighbors; i++) {
+                    int nb = neighbors[i];
                     // add nb to the nodes to be processed
                     frontier.push(nb);
                     // if nb has not been already visited,
@@ -154,29 +171,56 @@ public class SequentialSolver
     }
 
     /**
-     * Returns the connected path, as a list of node identifiers, that
-     * goes from node <code>from</code> to node <code>to</code>
-     * following the inverse of relation <code>predecessor</code>. If
-     * such a path cannot be reconstructed from
-     * <code>predecessor</code>, the method returns <code>null</code>.
+     * Returns the number of nodes explored by the search so far.
+     *
+     * @return   the number of nodes visited
+     */
+    @Override
+    public int explored()
+    {
+        return visited.size();
+    }
+
+    @Override
+    public void setDeadline(Deadline deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    /**
+     * Returns the connected path of node identifiers that goes from
+     * node <code>from</code> to node <code>to</code> following the
+     * inverse of relation <code>predecessor</code>. If such a path
+     * cannot be reconstructed from <code>predecessor</code>, the method
+     * returns <code>null</code>.
      *
      * @param from   the identifier of the initial node on the path
      * @param to     the identifier of the final node on the path
-     * @return       the list of node identifiers from <code>from</code> to
+     * @return       the path of node identifiers from <code>from</code> to
      *               <code>to</code> if such a path can be reconstructed from
      *               <code>predecessor</code>; <code>null</code> otherwise
      */
-    protected List<Integer> pathFromTo(int from, int to) {
-        List<Integer> path = new LinkedList<>();
-        Integer current = to;
-        while (current != from) {
-            path.add(current);
-            current = predecessor.get(current);
-            if (current == null)
+    protected Path pathFromTo(int from, int to) {
+        // first count the nodes, then fill the path backwards
+        int length = 1;
+        for (int current = to; current != from; length++) {
+            Integer previous = predecessor.get(current);
+            if (previous == null)
                 return null;
+            current = previous;
+        }
+        Path.Builder path = new Path.Builder(length);
+        for (int current = to, i = length - 1; i >= 0; i--) {
+            path.set(i, current);
+            if (i > 0)
+                current = predecessor.get(current);
         }
-        path.add(from);
-        Collections.reverse(path);
-        return path;
+        return path.build();
     }
 }
@@ -0,0 +1,273 @@
+package amazed.solver;
+
+import amazed.maze.Graph;
+import amazed.maze.Maze;
+import amazed.maze.Path;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <code>ThreadSolver</code> implements a solver for <code>Maze</code>
+ * objects using a depth-first search whose branches run on threads of
+ * their own, rather than as tasks of a fork/join pool.
+ * <p>
+ * Every branch explores from some claimed nodes, as a task of
+ * <code>ForkJoinSolver</code> does; after <code>forkAfter</code> steps,
+ * it hands all but one of the nodes in its frontier to new branches.
+ * Branches share a <code>SearchContext</code>, and never join each
+ * other: all branches of a solve belong to one {@link Scope}, which
+ * the solve leaves only when every branch has ended. When a branch
+ * finds a goal, it publishes the path and cancels the scope; the other
+ * branches stop at their next step, and branches forked later do not
+ * start. An expired deadline stops the branches in the same way.
+ * <p>
+ * Branches run on virtual threads when the virtual machine supports
+ * them, and otherwise on platform threads created on demand. Either
+ * way, a branch that blocks &mdash; as every branch does in
+ * <code>Maze.move</code> while the search is animated &mdash; does not
+ * hold back the others, whereas a blocked task holds its fork/join
+ * worker; without blocking, fork/join tasks are cheaper. Instances can
+ * be run by a <code>ForkJoinPool</code> like other solvers; the task
+ * only waits for the branches.
+ */
+
+public class ThreadSolver
+    extends RecursiveTask<Path>
+    implements TimeBounded
+{
+    /**
+     * Default number of steps after which a branch forks.
+     */
+    public static final int FORK_AFTER = 3;
+
+    /**
+     * The maze being searched.
+     */
+    protected Maze maze;
+
+    private final int forkAfter;
+    private SearchContext context;
+    private Deadline deadline = Deadline.NONE;
+    private final AtomicInteger branches = new AtomicInteger();
+
+    /**
+     * Creates a solver that searches in <code>maze</code> from the
+     * start node to a goal, forking after {@link #FORK_AFTER} steps.
+     *
+     * @param maze   the maze to be searched
+     */
+    public ThreadSolver(Maze maze)
+    {
+        this(maze, FORK_AFTER);
+    }
+
+    /**
+     * Creates a solver that searches in <code>maze</code> from the
+     * start node to a goal, forking after a given number of visited
+     * nodes.
+     *
+     * @param maze        the maze to be searched
+     * @param forkAfter   the number of steps after which a branch
+     *                    forks; if <code>forkAfter &lt;= 0</code> the
+     *                    search runs in one branch
+     */
+    public ThreadSolver(Maze maze, int forkAfter)
+    {
+        this.maze = maze;
+        this.forkAfter = forkAfter <= 0 ? Integer.MAX_VALUE : forkAfter;
+    }
+
+    /**
+     * Searches for and returns the path, as a sequence of node
+     * identifiers, that goes from the start node to a goal node in
+     * the maze. If such a path cannot be found (because there are no
+     * goals, or all goals are unreacheable), the method returns
+     * <code>null</code>.
+     *
+     * @return   the path of node identifiers from the start node to a
+     *           goal node in the maze; <code>null</code> if such a path cannot
+     *           be found
+     */
+    @Override
+    public Path compute()
+    {
+        context = new SearchContext(maze, deadline);
+        Graph graph = maze.graph();
+        int start = graph.indexOf(maze.start());
+        context.visited().claim(start);
+        try (Scope scope = new Scope()) {
+            scope.fork(new int[] { start }, 1);
+            scope.join();
+        }
+        return context.result();
+    }
+
+    /**
+     * Returns the number of nodes claimed by all branches of the
+     * search so far.
+     *
+     * @return   the number of nodes visited
+     */
+    @Override
+    public int explored()
+    {
+        return context == null ? 0 : context.visited().cardinality();
+    }
+
+    @Override
+    public void setDeadline(Deadline deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return context != null && context.isTimedOut();
+    }
+
+    /**
+     * Returns the number of branches started by the search so far.
+     *
+     * @return   the number of branches
+     */
+    public int branches()
+    {
+        return branches.get();
+    }
+
+    // depth-first search from the `count' node indices in `frontier',
+    // all claimed, forking in `scope'
+    private void explore(Scope scope, int[] frontier, int count)
+    {
+        Graph graph = maze.graph();
+        AtomicBitSet visited = context.visited();
+        int[] neighbors = new int[Graph.MAX_DEGREE];
+        int player = maze.newPlayer(graph.idOf(frontier[count - 1]));
+        int steps = 0;
+        while (count > 0 && !scope.isCancelled()) {
+            int current = frontier[--count];
+            steps++;
+            maze.move(player, graph.idOf(current));
+            if (graph.isGoal(current)) {
+                context.publish(context.pathTo(graph, current));
+                scope.cancel();
+                return;
+            }
+            int nNeighbors = graph.neighbors(current, neighbors);
+            for (int n = 0; n < nNeighbors; n++) {
+                int nb = neighbors[n];
+                if (visited.claim(nb)) {
+                    context.setPredecessor(nb, current);
+                    if (count == frontier.length)
+                        frontier = Arrays.copyOf(frontier, 2 * count);
+                    frontier[count++] = nb;
+                }
+            }
+            if (count >= 2 && steps > forkAfter) {
+                // keep the newest node, hand every other one to its own branch
+                for (int i = 0; i < count - 1; i++)
+                    scope.fork(new int[] { frontier[i] }, 1);
+                frontier[0] = frontier[count - 1];
+                count = 1;
+                steps = 0;
+            }
+        }
+        if (count > 0)
+            context.abandon();
+    }
+
+    /**
+     * <code>Scope</code> owns the branches of one solve. Branches are
+     * forked into the scope, which runs each of them on a new thread;
+     * <code>join</code> waits until all branches forked so far, and
+     * any they fork, have ended; <code>close</code> releases the
+     * threads. Cancelling the scope stops its branches cooperatively,
+     * without interrupting them, since an interrupted animation step
+     * is not an error.
+     */
+    private class Scope
+        implements AutoCloseable
+    {
+        private final ExecutorService executor = newExecutor();
+        // branches forked and not ended
+        private int running = 0;
+        private volatile boolean cancelled = false;
+
+        void fork(int[] frontier, int count)
+        {
+            synchronized (this) {
+                if (cancelled)
+                    return;
+                running++;
+            }
+            branches.incrementAndGet();
+            executor.execute(() -> {
+                    try {
+                        if (!cancelled)
+                            explore(this, frontier, count);
+                    } finally {
+                        end();
+                    }
+                });
+        }
+
+        private synchronized void end()
+        {
+            if (--running == 0)
+                notifyAll();
+        }
+
+        synchronized void join()
+        {
+            boolean interrupted = false;
+            while (running > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    cancel();
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        void cancel()
+        {
+            cancelled = true;
+        }
+
+        boolean isCancelled()
+        {
+            return cancelled || context.isStopped();
+        }
+
+        @Override
+        public void close()
+        {
+            cancel();
+            join();
+            executor.shutdown();
+        }
+    }
+
+    // an executor that starts a virtual thread per task if supported,
+    // and a daemon platform thread per task otherwise
+    private static ExecutorService newExecutor()
+    {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "amazed-branch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+    }
+}
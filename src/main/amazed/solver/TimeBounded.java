@@ -0,0 +1,37 @@
+package amazed.solver;
+
+/**
+ * <code>TimeBounded</code> is implemented by solvers whose search can
+ * be bounded by a {@link Deadline}. When the deadline expires before
+ * the search ends, the search stops, <code>compute</code> returns
+ * <code>null</code> as if no goal were reachable, and
+ * <code>isTimedOut</code> tells the two outcomes apart;
+ * <code>explored</code> then counts the nodes explored before the
+ * search stopped.
+ */
+
+public interface TimeBounded
+{
+    /**
+     * Sets the deadline of the next search. Without a call to this
+     * method, searches are not bounded.
+     *
+     * @param deadline   the deadline, or {@link Deadline#NONE}
+     */
+    void setDeadline(Deadline deadline);
+
+    /**
+     * Tests whether the last search stopped because its deadline
+     * expired before it found a goal or explored every reachable node.
+     *
+     * @return   <code>true</code> if the search timed out
+     */
+    boolean isTimedOut();
+
+    /**
+     * Returns the number of nodes explored by the search so far.
+     *
+     * @return   the number of nodes explored
+     */
+    int explored();
+}